@@ -0,0 +1,86 @@
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control in front of the handlers (and therefore in front of DataStore).
+ *
+ * Answers 503 for exchanges the {@link RequestExecutor} could not queue, and optionally limits
+ * how many exchanges may run handlers at the same time. The limit matters in virtual-thread
+ * mode, where thousands of requests would otherwise pile up waiting on the connection pool.
+ */
+public class AdmissionFilter extends Filter {
+    private static final byte[] BUSY_BODY = "Server is busy, please retry.".getBytes(StandardCharsets.UTF_8);
+
+    private final Semaphore limiter;
+    private final long waitMillis;
+    private final AtomicLong shedCount = new AtomicLong();
+
+    /**
+     * @param maxConcurrent the maximum number of exchanges running handlers, or 0 for no limit
+     * @param waitMillis    how long an exchange may wait for a slot before it is shed
+     */
+    public AdmissionFilter(int maxConcurrent, long waitMillis) {
+        this.limiter = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+        this.waitMillis = waitMillis;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (RequestExecutor.isRejected()) {
+            reject(exchange);
+            return;
+        }
+        if (limiter == null) {
+            chain.doFilter(exchange);
+            return;
+        }
+
+        boolean admitted;
+        try {
+            admitted = limiter.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            reject(exchange);
+            return;
+        }
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    /**
+     * Sends 503 Service Unavailable with a short Retry-After hint. The request body is not
+     * read, and the connection is closed afterwards.
+     */
+    private void reject(HttpExchange exchange) throws IOException {
+        shedCount.incrementAndGet();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(503, BUSY_BODY.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(BUSY_BODY);
+        os.close();
+    }
+
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    @Override
+    public String description() {
+        return "Sheds load with 503 when the server is saturated";
+    }
+}
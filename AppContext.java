@@ -0,0 +1,139 @@
+import com.google.gson.Gson;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The resources the HTTP server's handlers share, created once at startup and handed to every
+ * handler.
+ *
+ * The context owns a {@link DataService}, and through it the storage backend (with the MySQL
+ * connection pool and the MongoDB client), the product catalog and the caches. They are
+ * opened by {@link #start()} before the server takes requests, so the first requests find them
+ * warm, and closed by {@link #stop()} once the server has drained. Gson instances are
+ * thread-safe and cache their type adapters, so one is shared by all handlers.
+ *
+ * Every context has its own backend. The static {@link DataStore} facade, which the Swing
+ * clients use, delegates to the {@link #getDefault() default context}.
+ */
+public class AppContext {
+    private static AppContext defaultContext = null;
+
+    private final DataService dataStore;
+    private final Gson gson = new Gson();
+
+    private boolean started = false;
+    private boolean stopped = false;
+
+    /**
+     * Creates a context on the backend named by -Dstore.backend.
+     */
+    public AppContext() {
+        this(new DataService());
+    }
+
+    /**
+     * Creates a context around an existing service, e.g. one on an in-memory backend.
+     *
+     * @param dataStore the service the context owns from now on
+     */
+    public AppContext(DataService dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Returns the process-wide context behind the static DataStore facade, creating it on first
+     * use. It is not started until someone calls {@link #start()}; until then its backend opens
+     * on first use.
+     *
+     * @return the default context
+     */
+    public static synchronized AppContext getDefault() {
+        if (defaultContext == null) {
+            defaultContext = new AppContext();
+        }
+        return defaultContext;
+    }
+
+    /**
+     * Opens the storage backend and loads the product catalog.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        dataStore.open();
+        registerMetrics();
+        started = true;
+        Log.info("Application context started.", "ms", (System.nanoTime() - startNanos) / 1_000_000,
+                "backend", dataStore.getBackendName());
+    }
+
+    /**
+     * Closes the storage backend. Call it after the server has stopped taking requests; the
+     * context cannot be started again.
+     */
+    public synchronized void stop() {
+        if (!started || stopped) {
+            return;
+        }
+        stopped = true;
+        dataStore.close();
+        Log.info("Application context stopped.");
+    }
+
+    /**
+     * Exposes the connection pool, product cache, idempotency key, stock reservation and logging
+     * counters at /metrics. They are read when scraped; the pool metrics are left out when the
+     * backend has no MySQL pool.
+     */
+    private void registerMetrics() {
+        Metrics.gauge("db_pool_connections_active", "Pooled MySQL connections in use.",
+                () -> poolStat(ConnectionPool.PoolStats::getActive));
+        Metrics.gauge("db_pool_connections_idle", "Pooled MySQL connections idle.",
+                () -> poolStat(ConnectionPool.PoolStats::getIdle));
+        Metrics.gauge("db_pool_waiting_threads", "Threads waiting for a pooled MySQL connection.",
+                () -> poolStat(ConnectionPool.PoolStats::getWaiting));
+        Metrics.counter("db_pool_timeouts_total", "Connection borrows that timed out.",
+                () -> poolStat(ConnectionPool.PoolStats::getTimeouts));
+        Metrics.counter("db_pool_wait_seconds_total", "Time spent waiting for pooled connections.",
+                () -> poolStat(stats -> stats.getTotalWaitMicros() / 1e6));
+
+        Metrics.counter("product_cache_hits_total", "Product cache hits.",
+                () -> dataStore.getProductCacheStats().getHits());
+        Metrics.counter("product_cache_misses_total", "Product cache misses.",
+                () -> dataStore.getProductCacheStats().getMisses());
+        Metrics.counter("product_cache_evictions_total", "Products evicted from the cache to stay within its size.",
+                () -> dataStore.getProductCacheStats().getEvictions());
+        Metrics.gauge("product_cache_size", "Products currently cached.",
+                () -> dataStore.getProductCacheStats().getSize());
+
+        Metrics.counter("order_idempotency_replays_total", "Checkouts answered from an earlier one with the same idempotency key.",
+                () -> dataStore.getIdempotencyStats().getReplays());
+        Metrics.counter("order_idempotency_conflicts_total", "Checkouts refused for reusing an idempotency key with a different cart.",
+                () -> dataStore.getIdempotencyStats().getConflicts());
+        Metrics.gauge("order_idempotency_keys", "Idempotency keys currently remembered.",
+                () -> dataStore.getIdempotencyStats().getSize());
+
+        Metrics.gauge("stock_reservations", "Stock reservations held for open carts.",
+                dataStore::getStockReservationCount);
+        Metrics.counter("stock_reservations_expired_total", "Stock reservations released because they expired.",
+                dataStore::getExpiredStockReservationCount);
+
+        Metrics.counter("log_entries_dropped_total", "Log entries dropped because the log buffer was full.",
+                Log::getDroppedCount);
+    }
+
+    private double poolStat(ToDoubleFunction<ConnectionPool.PoolStats> stat) {
+        ConnectionPool.PoolStats stats = dataStore.getPoolStats();
+        return stats != null ? stat.applyAsDouble(stats) : Double.NaN;
+    }
+
+    public DataService getDataStore() {
+        return dataStore;
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+}
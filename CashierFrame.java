@@ -5,6 +5,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
+import java.util.UUID;
 
 public class CashierFrame extends JFrame {
     private User user;
@@ -14,6 +15,9 @@ public class CashierFrame extends JFrame {
     private DefaultListModel<String> listModel;
     private JButton updateInventoryButton;
     private JButton placeOrderButton;
+    // Idempotency key of the last order that was not confirmed, reused if the same order is submitted again
+    private String pendingOrder;
+    private String pendingOrderKey;
 
     public CashierFrame(User user) {
         this.user = user;
@@ -206,8 +210,14 @@ public class CashierFrame extends JFrame {
         }
 
         // Place Order
-        boolean order = DataStore.placeOrder(customerIdInt, productId, quantity);
+        String orderDetails = customerIdInt + ":" + productId + ":" + quantity;
+        if (!orderDetails.equals(pendingOrder)) {
+            pendingOrder = orderDetails;
+            pendingOrderKey = UUID.randomUUID().toString();
+        }
+        boolean order = DataStore.placeOrder(pendingOrderKey, customerIdInt, productId, quantity);
         if (order) {
+            pendingOrder = null; // The next order is a new one, even with the same details
             JOptionPane.showMessageDialog(this, "Order placed successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
             handleSearch(); // Refresh the product list
         } else {
@@ -0,0 +1,182 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Validators (ETag, Last-Modified) and conditional GET handling for the JSON handlers.
+ *
+ * The schema has no row versions, so an entity's ETag is a 64-bit FNV-1a hash of the fields
+ * that make up its JSON representation. It is computed from the entity itself, so a request
+ * that turns out to be Not Modified skips JSON serialization entirely. ETags are weak
+ * ("W/..."): they identify the entity's content, not the exact bytes, which may differ once
+ * the response is compressed.
+ *
+ * As in RFC 9110, If-None-Match takes precedence; If-Modified-Since is only consulted when the
+ * request has no If-None-Match and the entity has a Last-Modified time.
+ */
+public class ConditionalGet {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ConditionalGet() {
+    }
+
+    // ----------------------------
+    // Entity Tags
+    // ----------------------------
+
+    /**
+     * Returns the entity tag of a product.
+     *
+     * @param product the product
+     * @return a weak ETag, e.g. W/"1c2b3a4d5e6f7081"
+     */
+    public static String etag(Product product) {
+        long h = FNV_OFFSET_BASIS;
+        h = hash(h, product.getProductId());
+        h = hash(h, product.getName());
+        h = hash(h, product.getDescription());
+        h = hash(h, Double.doubleToLongBits(product.getPrice()));
+        h = hash(h, product.getStock());
+        return format(h);
+    }
+
+    /**
+     * Returns the entity tag of an order.
+     *
+     * @param order the order
+     * @return a weak ETag, e.g. W/"1c2b3a4d5e6f7081"
+     */
+    public static String etag(Order order) {
+        long h = FNV_OFFSET_BASIS;
+        h = hash(h, order.getOrderId());
+        h = hash(h, order.getUserId());
+        h = hash(h, order.getProductId());
+        h = hash(h, order.getQuantity());
+        h = hash(h, order.getOrderDate() != null ? order.getOrderDate().getTime() : 0L);
+        h = hash(h, order.getStatus());
+        h = hash(h, Double.doubleToLongBits(order.getProductPrice()));
+        return format(h);
+    }
+
+    // ----------------------------
+    // Request Handling
+    // ----------------------------
+
+    /**
+     * Sets the validators on the response and, if the client's copy is current, sends
+     * 304 Not Modified. The validators are set either way, as a 304 must carry them too.
+     *
+     * @param exchange     the HttpExchange object
+     * @param etag         the entity tag of the current representation
+     * @param lastModified when the entity last changed, or null if unknown
+     * @param cacheControl the Cache-Control header value
+     * @return true if a 304 was sent and the handler is done, false to send the full response
+     * @throws IOException if the 304 cannot be sent
+     */
+    public static boolean sendNotModifiedIfCurrent(HttpExchange exchange, String etag, Date lastModified,
+                                                   String cacheControl) throws IOException {
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("ETag", etag);
+        if (lastModified != null) {
+            responseHeaders.set("Last-Modified", formatHttpDate(lastModified));
+        }
+        responseHeaders.set("Cache-Control", cacheControl);
+
+        if (!isNotModified(exchange.getRequestHeaders(), etag, lastModified)) {
+            return false;
+        }
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return true;
+    }
+
+    /**
+     * Evaluates If-None-Match and If-Modified-Since against the current representation.
+     *
+     * @param requestHeaders the request headers
+     * @param etag           the entity tag of the current representation
+     * @param lastModified   when the entity last changed, or null if unknown
+     * @return true if the client's copy is current
+     */
+    static boolean isNotModified(Headers requestHeaders, String etag, Date lastModified) {
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesAny(ifNoneMatch, etag);
+        }
+        String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        if (ifModifiedSince == null || lastModified == null) {
+            return false;
+        }
+        try {
+            Instant since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            // HTTP dates have whole seconds
+            return lastModified.getTime() / 1000 <= since.getEpochSecond();
+        } catch (DateTimeParseException e) {
+            // An invalid date is ignored, as if the header were absent
+            return false;
+        }
+    }
+
+    /**
+     * Weak comparison of an If-None-Match list ("*" or comma-separated tags) with an ETag.
+     */
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        String opaqueTag = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static String formatHttpDate(Date date) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(date.toInstant().atZone(ZoneOffset.UTC));
+    }
+
+    // ----------------------------
+    // FNV-1a
+    // ----------------------------
+
+    private static long hash(long h, long value) {
+        for (int i = 0; i < 8; i++) {
+            h ^= (value >>> (i * 8)) & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long hash(long h, String value) {
+        if (value == null) {
+            // Distinguish null from ""
+            return hash(h, -1L);
+        }
+        h = hash(h, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            h ^= c & 0xff;
+            h *= FNV_PRIME;
+            h ^= c >>> 8;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static String format(long h) {
+        String hex = Long.toHexString(h);
+        return "W/\"" + "0000000000000000".substring(hex.length()) + hex + "\"";
+    }
+}
@@ -0,0 +1,396 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of JDBC connections.
+ *
+ * Connections handed out by {@link #getConnection()} are proxies: calling close() returns the
+ * physical connection to the pool instead of closing it, so callers keep using
+ * try-with-resources exactly as they would with DriverManager.
+ *
+ * A connection held past the leak threshold is logged with the name of the borrowing thread.
+ * With -Ddb.pool.leakTrace=true the borrower's stack trace is recorded as well; that costs a
+ * stack walk per borrow, so it is meant for tracking a leak down rather than for production.
+ */
+public class ConnectionPool {
+    private static final boolean LEAK_TRACE = Boolean.getBoolean("db.pool.leakTrace");
+
+    private final String jdbcUrl;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    // Idle connections, most recently returned first so the tail ages out
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Boolean> borrowed = new ConcurrentHashMap<>();
+    // One permit per connection that may be open at the same time
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    // Statistics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    public ConnectionPool(String jdbcUrl, String user, String password, int minSize, int maxSize,
+                          long acquireTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.jdbcUrl = jdbcUrl;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, leakThresholdMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the acquire timeout for one to become free.
+     *
+     * @return a pooled Connection; close it to return it to the pool
+     * @throws SQLException if the pool is closed, exhausted or the database is unreachable
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timed out after " + acquireTimeoutMillis
+                        + " ms waiting for a connection (" + getStats() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        } finally {
+            totalWaitNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdleConnection();
+            if (pooled == null) {
+                pooled = createConnection();
+            }
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowedBy = Thread.currentThread().getName();
+            pooled.borrowTrace = LEAK_TRACE && leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            borrowed.put(pooled, Boolean.TRUE);
+            borrowCount.incrementAndGet();
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Pops idle connections until one passes validation.
+     *
+     * @return a validated idle connection, or null if none are idle
+     */
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isValid(pooled)) {
+                return pooled;
+            }
+            validationFailureCount.incrementAndGet();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(jdbcUrl, user, password);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    /**
+     * Called by a handle's close(); resets the connection and puts it back in the idle queue.
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                destroy(pooled);
+            } else {
+                // Never hand a half-finished transaction to the next borrower
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        destroyedCount.incrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Already broken; nothing else to do
+        }
+    }
+
+    /**
+     * Periodic maintenance: evicts connections idle past the idle timeout, tops the pool up to
+     * its minimum size and reports connections held longer than the leak threshold.
+     */
+    private void housekeep() {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        // Evict from the tail, where the least recently used connections sit
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > minSize) {
+            PooledConnection pooled = it.next();
+            if (now - pooled.lastUsedAt > idleTimeoutMillis && idle.removeLastOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        // Top up to the minimum size without blocking borrowers
+        while (totalConnections.get() < minSize && permits.tryAcquire()) {
+            try {
+                PooledConnection pooled = createConnection();
+                pooled.lastUsedAt = now;
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                Log.warn("Connection pool could not open a connection.", "error", e.getMessage());
+                break;
+            } finally {
+                permits.release();
+            }
+        }
+
+        // Leak detection
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pooled : borrowed.keySet()) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMillis) {
+                    pooled.leakReported = true;
+                    leakCount.incrementAndGet();
+                    // borrowTrace, when recorded, is the stack trace of the borrower
+                    Log.warn("Possible connection leak.", pooled.borrowTrace, "thread", pooled.borrowedBy,
+                            "heldMs", now - pooled.borrowedAt);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the housekeeper. Borrowed connections are closed
+     * as they are returned.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool's counters.
+     *
+     * @return PoolStats snapshot
+     */
+    public PoolStats getStats() {
+        return new PoolStats(maxSize, totalConnections.get(), idle.size(), borrowed.size(),
+                permits.getQueueLength(), borrowCount.get(), createdCount.get(), destroyedCount.get(),
+                timeoutCount.get(), validationFailureCount.get(), leakCount.get(),
+                TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()));
+    }
+
+    // ----------------------------
+    // Pooled connection wrapper
+    // ----------------------------
+
+    private class PooledConnection {
+        private final Connection physical;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile String borrowedBy;
+        private volatile Throwable borrowTrace;
+        private volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection newHandle() {
+            leakReported = false;
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    /**
+     * The logical connection given to a borrower. After close() it refuses further use, so a
+     * stale reference can never touch a connection that now belongs to someone else.
+     */
+    private class Handle implements InvocationHandler {
+        private PooledConnection pooled;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Connection physical;
+            synchronized (this) {
+                if (name.equals("close")) {
+                    if (pooled != null) {
+                        PooledConnection toRelease = pooled;
+                        pooled = null;
+                        release(toRelease);
+                    }
+                    return null;
+                }
+                if (name.equals("isClosed")) {
+                    return pooled == null;
+                }
+                if (pooled == null) {
+                    if (name.equals("toString")) {
+                        return "PooledConnection[closed]";
+                    }
+                    if (name.equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (name.equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    throw new SQLException("Connection has been returned to the pool.");
+                }
+                // Read under the lock: a concurrent close() nulls pooled
+                physical = pooled.physical;
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // ----------------------------
+    // Statistics
+    // ----------------------------
+
+    /**
+     * Point-in-time view of the pool, used for sizing.
+     */
+    public static class PoolStats {
+        private final int maxSize;
+        private final int total;
+        private final int idle;
+        private final int active;
+        private final int waiting;
+        private final long borrows;
+        private final long created;
+        private final long destroyed;
+        private final long timeouts;
+        private final long validationFailures;
+        private final long leaks;
+        private final long totalWaitMicros;
+
+        public PoolStats(int maxSize, int total, int idle, int active, int waiting, long borrows, long created,
+                         long destroyed, long timeouts, long validationFailures, long leaks, long totalWaitMicros) {
+            this.maxSize = maxSize;
+            this.total = total;
+            this.idle = idle;
+            this.active = active;
+            this.waiting = waiting;
+            this.borrows = borrows;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.timeouts = timeouts;
+            this.validationFailures = validationFailures;
+            this.leaks = leaks;
+            this.totalWaitMicros = totalWaitMicros;
+        }
+
+        public int getMaxSize() { return maxSize; }
+        public int getTotal() { return total; }
+        public int getIdle() { return idle; }
+        public int getActive() { return active; }
+        public int getWaiting() { return waiting; }
+        public long getBorrows() { return borrows; }
+        public long getCreated() { return created; }
+        public long getDestroyed() { return destroyed; }
+        public long getTimeouts() { return timeouts; }
+        public long getValidationFailures() { return validationFailures; }
+        public long getLeaks() { return leaks; }
+        public long getTotalWaitMicros() { return totalWaitMicros; }
+
+        @Override
+        public String toString() {
+            return "total=" + total + "/" + maxSize + ", idle=" + idle + ", active=" + active
+                    + ", waiting=" + waiting + ", borrows=" + borrows + ", created=" + created
+                    + ", destroyed=" + destroyed + ", timeouts=" + timeouts
+                    + ", validationFailures=" + validationFailures + ", leaks=" + leaks
+                    + ", totalWaitMicros=" + totalWaitMicros;
+        }
+    }
+}
@@ -3,7 +3,11 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 public class CustomerFrame extends JFrame {
     private User user;
@@ -28,8 +32,16 @@ public class CustomerFrame extends JFrame {
     private JList<String> cartList;
     private JLabel totalLabel;
 
+    // Order History Tab Components
+    private static final int ORDER_HISTORY_PAGE_SIZE = 50;
+    private JTextArea orderHistoryArea;
+    private JButton loadMoreOrdersButton;
+    private String orderHistoryCursor; // Next page of the order history; null before the first page
+
     // To keep track of cart items
     private List<CartItem> cartItems;
+    // Idempotency key of the current cart, so placing it again cannot order it twice; null until checkout
+    private String checkoutKey;
 
     public CustomerFrame(User user, Customer customer) {
         this.user = user;
@@ -175,16 +187,51 @@ public class CustomerFrame extends JFrame {
     private JPanel createOrderHistoryPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        JTextArea orderHistoryArea = new JTextArea();
+        orderHistoryArea = new JTextArea();
         orderHistoryArea.setEditable(false);
 
-        List<Order> orders = DataStore.getOrdersForUser(user.getUserId());
-        if (orders.isEmpty()) {
+        // Older orders are loaded a page at a time, on request
+        loadMoreOrdersButton = new JButton("Load More Orders");
+        loadMoreOrdersButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                loadOrderHistoryPage();
+            }
+        });
+
+        orderHistoryCursor = null;
+        loadOrderHistoryPage();
+
+        JScrollPane scrollPane = new JScrollPane(orderHistoryArea);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        JPanel buttonsPanel = new JPanel();
+        buttonsPanel.add(loadMoreOrdersButton);
+        panel.add(buttonsPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    /**
+     * Appends the next page of the order history, newest orders first.
+     */
+    private void loadOrderHistoryPage() {
+        boolean firstPage = orderHistoryCursor == null;
+        Page<Order> page = DataStore.getOrdersForUser(user.getUserId(), orderHistoryCursor, ORDER_HISTORY_PAGE_SIZE);
+        List<Order> orders = page.getItems();
+        if (orders.isEmpty() && firstPage) {
             orderHistoryArea.setText("You have no past orders.");
         } else {
+            // Fetch every product on the page with one lookup
+            Set<Integer> productIds = new HashSet<>();
+            for (Order o : orders) {
+                productIds.add(o.getProductId());
+            }
+            Map<Integer, Product> products = DataStore.findProductsByIds(productIds);
+
             StringBuilder sb = new StringBuilder();
             for (Order o : orders) {
-                Product p = DataStore.findProductById(o.getProductId());
+                Product p = products.get(o.getProductId());
                 String productName = (p != null) ? p.getName() : "Unknown Product";
                 sb.append("Order ID: ").append(o.getOrderId())
                   .append(", Product: ").append(productName)
@@ -193,13 +240,11 @@ public class CustomerFrame extends JFrame {
                   .append(", Status: ").append(o.getStatus())
                   .append("\n");
             }
-            orderHistoryArea.setText(sb.toString());
+            orderHistoryArea.append(sb.toString());
         }
 
-        JScrollPane scrollPane = new JScrollPane(orderHistoryArea);
-        panel.add(scrollPane, BorderLayout.CENTER);
-
-        return panel;
+        orderHistoryCursor = page.getNextCursor();
+        loadMoreOrdersButton.setEnabled(page.hasNext());
     }
 
     /**
@@ -353,10 +398,18 @@ public class CustomerFrame extends JFrame {
             return;
         }
 
+        // Hold the stock until checkout, so it cannot run out in the meantime
+        String reservationId = DataStore.reserveStock(productId, quantity);
+        if (reservationId == null) {
+            JOptionPane.showMessageDialog(this, "Requested quantity exceeds available stock. Other carts may be holding some of it.", "Insufficient Stock", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
         // Add to cart
         String cartItem = "ID: " + productId + " | " + name + " | Qty: " + quantity + " | $" + price;
         cartListModel.addElement(cartItem);
-        cartItems.add(new CartItem(productId, name, quantity, price));
+        cartItems.add(new CartItem(productId, name, quantity, price, reservationId));
+        checkoutKey = null; // A different cart is a different checkout
         updateTotal();
     }
 
@@ -386,23 +439,61 @@ public class CustomerFrame extends JFrame {
             return;
         }
 
-        boolean allOrdersPlaced = true;
+        // Check out the whole cart in one call
+        List<OrderLine> lines = new ArrayList<>();
         for (CartItem item : cartItems) {
-            boolean orderPlaced = DataStore.placeOrder(user.getUserId(), item.getProductId(), item.getQuantity());
-            if (!orderPlaced) {
-                allOrdersPlaced = false;
+            lines.add(new OrderLine(item.getProductId(), item.getQuantity(), item.getReservationId()));
+        }
+        if (checkoutKey == null) {
+            checkoutKey = UUID.randomUUID().toString();
+        }
+        List<OrderLineResult> results;
+        try {
+            results = DataStore.placeCartOrder(checkoutKey, user.getUserId(), lines);
+        } catch (RuntimeException ex) {
+            // Keep the cart and its key, so trying again cannot place the orders twice
+            Log.error("Error placing cart order.", ex, "userId", user.getUserId());
+            JOptionPane.showMessageDialog(this, "The order could not be placed. Please try again.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        boolean anyPlaced = false;
+        StringBuilder failedItems = new StringBuilder();
+        for (int i = 0; i < results.size(); i++) {
+            OrderLineResult result = results.get(i);
+            if (result.isPlaced()) {
+                anyPlaced = true;
+            } else {
+                failedItems.append("\n- ").append(cartItems.get(i).getProductName())
+                           .append(" (Qty: ").append(result.getQuantity()).append("): ")
+                           .append(result.getMessage());
             }
         }
 
-        if (allOrdersPlaced) {
+        if (!anyPlaced) {
+            // Nothing is recorded under the key and the failed lines keep their reservations until
+            // they expire, so the cart stays as it is for another try
+            JOptionPane.showMessageDialog(this, "No orders could be placed:" + failedItems, "Order Failed", JOptionPane.ERROR_MESSAGE);
+            loadProducts("");
+            return;
+        }
+        if (failedItems.length() == 0) {
             JOptionPane.showMessageDialog(this, "All orders placed successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
         } else {
-            JOptionPane.showMessageDialog(this, "Some orders could not be placed. Please check your cart.", "Partial Success", JOptionPane.WARNING_MESSAGE);
+            JOptionPane.showMessageDialog(this, "Some orders could not be placed:" + failedItems, "Partial Success", JOptionPane.WARNING_MESSAGE);
         }
 
-        // Clear cart
+        // The checkout is final: sending its key again only returns these results, so clear the
+        // cart and give back the stock its failed lines still hold
+        for (int i = 0; i < results.size(); i++) {
+            String reservationId = cartItems.get(i).getReservationId();
+            if (!results.get(i).isPlaced() && reservationId != null) {
+                DataStore.releaseStockReservation(reservationId);
+            }
+        }
         cartListModel.clear();
         cartItems.clear();
+        checkoutKey = null;
         updateTotal();
         loadProducts(""); // Refresh product list to reflect updated stock
         refreshOrderHistory(); // Update order history tab
@@ -507,17 +598,20 @@ public class CustomerFrame extends JFrame {
         private String productName;
         private int quantity;
         private double price;
+        private String reservationId;
 
-        public CartItem(int productId, String productName, int quantity, double price) {
+        public CartItem(int productId, String productName, int quantity, double price, String reservationId) {
             this.productId = productId;
             this.productName = productName;
             this.quantity = quantity;
             this.price = price;
+            this.reservationId = reservationId;
         }
 
         public int getProductId() { return productId; }
         public String getProductName() { return productName; }
         public int getQuantity() { return quantity; }
         public double getPrice() { return price; }
+        public String getReservationId() { return reservationId; }
     }
 }
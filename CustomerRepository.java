@@ -0,0 +1,44 @@
+import java.util.List;
+
+/**
+ * Storage for customer profiles, linked to users by user ID.
+ */
+public interface CustomerRepository {
+    /**
+     * Creates a new Customer.
+     *
+     * @param customer the Customer object to create
+     */
+    void create(Customer customer) throws StorageException;
+
+    /**
+     * Retrieves a Customer by userId.
+     *
+     * @param userId the associated user ID
+     * @return Customer object if found, else null
+     */
+    Customer findByUserId(int userId) throws StorageException;
+
+    /**
+     * Updates a Customer's profile information.
+     *
+     * @param customer the Customer object with updated profile
+     */
+    void updateProfile(Customer customer) throws StorageException;
+
+    /**
+     * Updates a Customer's payment methods.
+     *
+     * @param userId         the associated user ID
+     * @param paymentMethods the updated list of PaymentMethod objects
+     */
+    void updatePaymentMethods(int userId, List<PaymentMethod> paymentMethods) throws StorageException;
+
+    /**
+     * Checks if a customer profile exists for a user.
+     *
+     * @param userId the user ID to check
+     * @return true if the profile exists, else false
+     */
+    boolean exists(int userId) throws StorageException;
+}
@@ -0,0 +1,1477 @@
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * One application's entry point to stored data.
+ *
+ * The data itself lives in a {@link StorageBackend}, chosen with -Dstore.backend: "database"
+ * (the default: users and products in MySQL, everything else in MongoDB) or "memory" (an
+ * in-process store seeded with sample data, for load tests and benchmarks). Nothing connects
+ * until the first call. The product catalog, stock mirroring and order id generation sit on
+ * top of whichever backend is in use, so both backends run the same code paths.
+ *
+ * Each instance owns its backend (and with it the MySQL connection pool and the MongoDB
+ * client), catalog, caches and background tasks; two instances share nothing but the
+ * process-wide metrics. An {@link AppContext} holds one, and the static {@link DataStore}
+ * facade used by the Swing clients delegates to the default context's.
+ */
+public class DataService {
+    // ----------------------------
+    // Storage Backend
+    // ----------------------------
+    private static final String BACKEND = System.getProperty("store.backend", "database");
+    private final String backendName;
+    private volatile StorageBackend backend = null;
+    private volatile boolean salesRollupChecked = false;
+
+    // ----------------------------
+    // In-Memory Product Catalog
+    // ----------------------------
+    // Serves product searches from memory; disable with -Dcatalog.disabled=true
+    private static final boolean CATALOG_ENABLED = !Boolean.getBoolean("catalog.disabled");
+    // Reload interval, so writes made by other processes show up in this one
+    private static final long CATALOG_RELOAD_MS = Long.getLong("catalog.reloadMs", 60000L);
+    private final ProductCatalog productCatalog = new ProductCatalog();
+    // Keeps the catalog's stock in step with committed stock changes
+    private final Inventory inventory = new Inventory(productCatalog, 64);
+
+    // ----------------------------
+    // Product Cache
+    // ----------------------------
+    // Read-through cache for findProductById; -Dproduct.cache.maxSize=0 disables it
+    private final ProductCache productCache = new ProductCache(
+            Integer.getInteger("product.cache.maxSize", 10000), Long.getLong("product.cache.ttlMs", 30000L));
+
+    // ----------------------------
+    // Order IDs
+    // ----------------------------
+    // Every server process sharing the orders collection needs its own -Dorder.nodeId (0-1023);
+    // shared by all instances, since two generators with one node ID could hand out the same ID
+    private static final OrderIdGenerator orderIdGenerator = new OrderIdGenerator(Integer.getInteger("order.nodeId", 0));
+
+    // ----------------------------
+    // Order Outbox
+    // ----------------------------
+    // Orders are recorded with their stock change and relayed to the order store in the
+    // background; -Dorder.outbox.disabled=true writes them to the order store directly instead
+    private static final boolean OUTBOX_ENABLED = !Boolean.getBoolean("order.outbox.disabled");
+    private volatile OutboxRelay outboxRelay = null;
+
+    // ----------------------------
+    // Idempotency Keys
+    // ----------------------------
+    // Results of keyed checkouts, so retries do not place orders twice; -Dorder.idempotency.maxKeys=0 disables it
+    private final IdempotencyStore idempotencyStore = new IdempotencyStore(
+            Integer.getInteger("order.idempotency.maxKeys", 100000), Long.getLong("order.idempotency.ttlMs", 900000L));
+
+    // ----------------------------
+    // Stock Reservations
+    // ----------------------------
+    // Stock held for open carts in this process, released at checkout or after -Dstock.reservation.ttlMs
+    private final StockReservations reservations = new StockReservations(
+            Long.getLong("stock.reservation.ttlMs", 900000L));
+
+    // ----------------------------
+    // Low-Stock Monitor
+    // ----------------------------
+    // Orders refills for products whose stock changes take them low; -Drefill.auto.disabled=true turns it off
+    private static final boolean AUTO_REFILL_ENABLED = !Boolean.getBoolean("refill.auto.disabled");
+    private volatile LowStockMonitor lowStockMonitor = null;
+
+    // ----------------------------
+    // Metrics
+    // ----------------------------
+    // One timer per public operation, exported at /metrics (see Metrics)
+    private static final Metrics.Family OPERATIONS = Metrics.family("datastore_operation", "operation",
+            "DataStore operations");
+    private static final Metrics.Timer FIND_USER_BY_USERNAME = OPERATIONS.timer("findUserByUsername");
+    private static final Metrics.Timer CREATE_USER_AND_CUSTOMER = OPERATIONS.timer("createUserAndCustomer");
+    private static final Metrics.Timer SEARCH_PRODUCTS_BY_NAME = OPERATIONS.timer("searchProductsByName");
+    private static final Metrics.Timer SEARCH_PRODUCTS_BY_NAME_PAGE = OPERATIONS.timer("searchProductsByNamePage");
+    private static final Metrics.Timer FIND_PRODUCT_BY_ID = OPERATIONS.timer("findProductById");
+    private static final Metrics.Timer FIND_PRODUCTS_BY_IDS = OPERATIONS.timer("findProductsByIds");
+    private static final Metrics.Timer ADD_PRODUCT = OPERATIONS.timer("addProduct");
+    private static final Metrics.Timer UPDATE_PRODUCT = OPERATIONS.timer("updateProduct");
+    private static final Metrics.Timer DELETE_PRODUCT = OPERATIONS.timer("deleteProduct");
+    private static final Metrics.Timer GET_ALL_PRODUCTS = OPERATIONS.timer("getAllProducts");
+    private static final Metrics.Timer GET_ALL_PRODUCTS_PAGE = OPERATIONS.timer("getAllProductsPage");
+    private static final Metrics.Timer SEARCH_PRODUCTS = OPERATIONS.timer("searchProducts");
+    private static final Metrics.Timer SEARCH_PRODUCTS_PAGE = OPERATIONS.timer("searchProductsPage");
+    private static final Metrics.Timer SEARCH_PRODUCTS_INTO = OPERATIONS.timer("searchProductsInto");
+    private static final Metrics.Timer CREATE_CUSTOMER = OPERATIONS.timer("createCustomer");
+    private static final Metrics.Timer GET_CUSTOMER_BY_USER_ID = OPERATIONS.timer("getCustomerByUserId");
+    private static final Metrics.Timer UPDATE_CUSTOMER_PROFILE = OPERATIONS.timer("updateCustomerProfile");
+    private static final Metrics.Timer UPDATE_CUSTOMER_PAYMENT_METHODS = OPERATIONS.timer("updateCustomerPaymentMethods");
+    private static final Metrics.Timer RESERVE_STOCK = OPERATIONS.timer("reserveStock");
+    private static final Metrics.Timer RELEASE_STOCK_RESERVATION = OPERATIONS.timer("releaseStockReservation");
+    private static final Metrics.Timer GET_AVAILABLE_STOCK = OPERATIONS.timer("getAvailableStock");
+    private static final Metrics.Timer FIND_ORDER_BY_ID = OPERATIONS.timer("findOrderById");
+    private static final Metrics.Timer PLACE_ORDER = OPERATIONS.timer("placeOrder");
+    private static final Metrics.Timer PLACE_CART_ORDER = OPERATIONS.timer("placeCartOrder");
+    private static final Metrics.Timer GET_ORDERS_FOR_USER = OPERATIONS.timer("getOrdersForUser");
+    private static final Metrics.Timer GET_ORDERS_FOR_USER_PAGE = OPERATIONS.timer("getOrdersForUserPage");
+    private static final Metrics.Timer CREATE_REFILL_ORDER = OPERATIONS.timer("createRefillOrder");
+    private static final Metrics.Timer GENERATE_SALES_REPORT = OPERATIONS.timer("generateSalesReport");
+    private static final Metrics.Timer REBUILD_SALES_ROLLUPS = OPERATIONS.timer("rebuildSalesRollups");
+    private static final Metrics.Timer IS_USER_ID_IN_MONGODB = OPERATIONS.timer("isUserIdInMongoDB");
+
+    /**
+     * Creates a service on the backend named by -Dstore.backend. Nothing connects until the
+     * first call or {@link #open()}.
+     */
+    public DataService() {
+        this(BACKEND);
+    }
+
+    /**
+     * Creates a service on the named backend.
+     *
+     * @param backendName "database" or "memory"
+     */
+    public DataService(String backendName) {
+        this.backendName = backendName;
+    }
+
+    // ----------------------------
+    // Backend Utility Methods
+    // ----------------------------
+
+    /**
+     * Returns the storage backend, creating it on first use.
+     *
+     * @return the StorageBackend in use
+     */
+    private StorageBackend backend() {
+        StorageBackend current = backend;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (backend == null) {
+                StorageBackend created = createBackend(backendName);
+                Log.info("Storage backend opened.", "backend", created.getName());
+                // Started before the backend is published, so no order skips the outbox
+                startOutboxRelay(created);
+                startLowStockMonitor(created);
+                backend = created;
+            }
+            return backend;
+        }
+    }
+
+    /**
+     * Returns the outbox relay, or null if orders are written to the order store directly.
+     */
+    private OutboxRelay outboxRelay() {
+        backend();
+        return outboxRelay;
+    }
+
+    private void startOutboxRelay(StorageBackend storageBackend) {
+        if (!OUTBOX_ENABLED) {
+            return;
+        }
+        OutboxRelay relay = new OutboxRelay(storageBackend.orderOutbox(), storageBackend.orders(), storageBackend.sales());
+        relay.start();
+        outboxRelay = relay;
+    }
+
+    private void stopOutboxRelay() {
+        OutboxRelay relay = outboxRelay;
+        if (relay != null) {
+            outboxRelay = null;
+            relay.stop();
+        }
+    }
+
+    private void startLowStockMonitor(StorageBackend storageBackend) {
+        if (!AUTO_REFILL_ENABLED) {
+            return;
+        }
+        LowStockMonitor monitor = new LowStockMonitor(storageBackend.refillOrders(), this::lookUpProducts);
+        monitor.start();
+        lowStockMonitor = monitor;
+    }
+
+    private void stopLowStockMonitor() {
+        LowStockMonitor monitor = lowStockMonitor;
+        if (monitor != null) {
+            lowStockMonitor = null;
+            monitor.stop();
+        }
+    }
+
+    /**
+     * Tells the low-stock monitor, if running, which products' stock has changed.
+     */
+    private void noteStockChanged(List<OrderLine> lines, boolean[] changed) {
+        LowStockMonitor monitor = lowStockMonitor;
+        if (monitor != null) {
+            monitor.stockChanged(lines, changed);
+        }
+    }
+
+    private static StorageBackend createBackend(String name) {
+        switch (name.toLowerCase()) {
+            case "memory":
+                return new InMemoryBackend();
+            case "database":
+                return new DatabaseBackend();
+            default:
+                throw new IllegalArgumentException("Unknown store.backend: " + name + " (expected database or memory)");
+        }
+    }
+
+    /**
+     * Creates the storage backend and loads the product catalog now, instead of on first use,
+     * so early requests do not pay for them. Calling it again does nothing.
+     */
+    public void open() {
+        backend();
+        useCatalog();
+    }
+
+    /**
+     * Replaces the storage backend, e.g. with an InMemoryBackend in a benchmark. Call it before
+     * any other method; the previous backend, if any, is not closed.
+     *
+     * @param storageBackend the backend to use from now on
+     */
+    public synchronized void setBackend(StorageBackend storageBackend) {
+        stopOutboxRelay();
+        stopLowStockMonitor();
+        startOutboxRelay(storageBackend);
+        startLowStockMonitor(storageBackend);
+        backend = storageBackend;
+        salesRollupChecked = false;
+        productCache.clear();
+        if (productCatalog.isLoaded()) {
+            try {
+                productCatalog.load(loadAllProducts());
+            } catch (StorageException e) {
+                Log.error("Error reloading product catalog.", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the storage backend in use.
+     *
+     * @return "database" or "memory"
+     */
+    public String getBackendName() {
+        return backend().getName();
+    }
+
+    /**
+     * Returns a snapshot of the MySQL connection pool counters, for sizing the pool.
+     *
+     * @return PoolStats snapshot, or null if the backend does not use MySQL
+     */
+    public ConnectionPool.PoolStats getPoolStats() {
+        StorageBackend current = backend();
+        return current instanceof DatabaseBackend ? ((DatabaseBackend) current).getPoolStats() : null;
+    }
+
+    /**
+     * Returns a snapshot of the product cache counters.
+     *
+     * @return CacheStats snapshot
+     */
+    public ProductCache.CacheStats getProductCacheStats() {
+        return productCache.getStats();
+    }
+
+    /**
+     * Returns a snapshot of the idempotency key counters.
+     *
+     * @return IdempotencyStats snapshot
+     */
+    public IdempotencyStore.IdempotencyStats getIdempotencyStats() {
+        return idempotencyStore.getStats();
+    }
+
+    /**
+     * Loads the product catalog on first use.
+     *
+     * @return true if searches can be served from the catalog, else false
+     */
+    private boolean useCatalog() {
+        if (!CATALOG_ENABLED) {
+            return false;
+        }
+        if (productCatalog.isLoaded()) {
+            return true;
+        }
+        synchronized (productCatalog) {
+            if (!productCatalog.isLoaded()) {
+                try {
+                    productCatalog.load(loadAllProducts());
+                    productCatalog.startPeriodicReload(this::loadAllProducts, CATALOG_RELOAD_MS);
+                    Log.info("Product catalog loaded.");
+                } catch (StorageException e) {
+                    Log.error("Error loading product catalog; falling back to the backend.", e);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // ----------------------------
+    // User Management
+    // ----------------------------
+
+    /**
+     * Finds and returns a User by username.
+     *
+     * @param username the username to search for
+     * @return User object if found, else null
+     */
+    public User findUserByUsername(String username) {
+        long start = FIND_USER_BY_USERNAME.start();
+        try {
+            return backend().users().findByUsername(username);
+        } catch (StorageException e) {
+            FIND_USER_BY_USERNAME.error();
+            Log.error("Error finding user by username.", e, "username", username);
+        } finally {
+            FIND_USER_BY_USERNAME.stop(start);
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new User and a corresponding Customer.
+     *
+     * @param username the username
+     * @param password the plain-text password
+     * @param role     the role (e.g., "customer")
+     * @param customer the Customer object with profile details
+     * @return true if successful, else false
+     */
+    public boolean createUserAndCustomer(String username, String password, String role, Customer customer) {
+        long start = CREATE_USER_AND_CUSTOMER.start();
+        try {
+            int userId = backend().users().create(username, password, role);
+            customer.setUserId(userId);
+            return createCustomer(customer);
+        } catch (StorageException e) {
+            CREATE_USER_AND_CUSTOMER.error();
+            Log.error("Error creating user and customer.", e);
+            return false;
+        } finally {
+            CREATE_USER_AND_CUSTOMER.stop(start);
+        }
+    }
+
+    // ----------------------------
+    // Product Management
+    // ----------------------------
+
+    /**
+     * Searches for products by name keyword.
+     *
+     * @param keyword the search keyword
+     * @return list of matching Product objects
+     */
+    public List<Product> searchProductsByName(String keyword) {
+        long start = SEARCH_PRODUCTS_BY_NAME.start();
+        try {
+            if (useCatalog()) {
+                return productCatalog.search(null, keyword, null, null);
+            }
+            try {
+                return backend().products().search(null, keyword, null, null, null, Integer.MAX_VALUE);
+            } catch (StorageException e) {
+                SEARCH_PRODUCTS_BY_NAME.error();
+                Log.error("Error searching products by name.", e);
+            }
+            return new ArrayList<>();
+        } finally {
+            SEARCH_PRODUCTS_BY_NAME.stop(start);
+        }
+    }
+
+    /**
+     * Returns one page of the products whose name contains the keyword, ordered by product ID.
+     *
+     * @param keyword the search keyword
+     * @param cursor  the next cursor of the previous page, or null for the first page
+     * @param limit   the page size, 1 to {@link Page#MAX_LIMIT}
+     * @return the page; empty if the search fails
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page<Product> searchProductsByName(String keyword, String cursor, int limit) {
+        long start = SEARCH_PRODUCTS_BY_NAME_PAGE.start();
+        try {
+            return searchProductPage(null, keyword, null, null, cursor, limit, SEARCH_PRODUCTS_BY_NAME_PAGE);
+        } finally {
+            SEARCH_PRODUCTS_BY_NAME_PAGE.stop(start);
+        }
+    }
+
+    /**
+     * Finds and returns a Product by productId, from the product cache when possible.
+     *
+     * @param productId the product ID
+     * @return Product object if found, else null
+     */
+    public Product findProductById(int productId) {
+        long start = FIND_PRODUCT_BY_ID.start();
+        try {
+            return productCache.get(productId, id -> backend().products().findById(id));
+        } catch (StorageException e) {
+            FIND_PRODUCT_BY_ID.error();
+            Log.error("Error finding product by ID.", e, "productId", productId);
+        } finally {
+            FIND_PRODUCT_BY_ID.stop(start);
+        }
+        return null;
+    }
+
+    /**
+     * Finds many Products at once: catalog hits first, then a single backend lookup for the rest.
+     *
+     * @param productIds the product IDs
+     * @return map of product ID to Product for the ids that exist
+     */
+    public Map<Integer, Product> findProductsByIds(Collection<Integer> productIds) {
+        long start = FIND_PRODUCTS_BY_IDS.start();
+        try {
+            Map<Integer, Product> products = new HashMap<>();
+            Set<Integer> missing = takeFromCatalog(productIds, products);
+            if (missing.isEmpty()) {
+                return products;
+            }
+            try {
+                products.putAll(backend().products().findByIds(missing));
+            } catch (StorageException e) {
+                FIND_PRODUCTS_BY_IDS.error();
+                Log.error("Error finding products by IDs.", e, "count", missing.size());
+            }
+            return products;
+        } finally {
+            FIND_PRODUCTS_BY_IDS.stop(start);
+        }
+    }
+
+    /**
+     * Like {@link #findProductsByIds}, but throws instead of returning only the catalog hits
+     * when the backend lookup fails. For the low-stock monitor, which retries failed checks.
+     *
+     * @param productIds the product IDs
+     * @return map of product ID to Product for the ids that exist
+     * @throws StorageException if the backend lookup fails
+     */
+    private Map<Integer, Product> lookUpProducts(Collection<Integer> productIds) throws StorageException {
+        Map<Integer, Product> products = new HashMap<>();
+        Set<Integer> missing = takeFromCatalog(productIds, products);
+        if (!missing.isEmpty()) {
+            products.putAll(backend().products().findByIds(missing));
+        }
+        return products;
+    }
+
+    /**
+     * Puts the products the catalog holds into found.
+     *
+     * @return the IDs still to be looked up in the backend
+     */
+    private Set<Integer> takeFromCatalog(Collection<Integer> productIds, Map<Integer, Product> found) {
+        Set<Integer> missing = new LinkedHashSet<>(productIds);
+        if (useCatalog()) {
+            for (Iterator<Integer> it = missing.iterator(); it.hasNext(); ) {
+                Product p = productCatalog.get(it.next());
+                if (p != null) {
+                    found.put(p.getProductId(), p);
+                    it.remove();
+                }
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Adds a new Product.
+     *
+     * @param product the Product object to add
+     * @return true if successful, else false
+     */
+    public boolean addProduct(Product product) {
+        long start = ADD_PRODUCT.start();
+        try {
+            int productId = backend().products().add(product);
+            if (productCatalog.isLoaded()) {
+                productCatalog.put(new Product(productId, product.getName(),
+                        product.getDescription(), product.getPrice(), product.getStock()));
+            }
+            return true;
+        } catch (StorageException e) {
+            ADD_PRODUCT.error();
+            Log.error("Error adding product.", e);
+        } finally {
+            ADD_PRODUCT.stop(start);
+        }
+        return false;
+    }
+
+    /**
+     * Updates an existing Product.
+     *
+     * @param product the Product object with updated details
+     * @return true if successful, else false
+     */
+    public boolean updateProduct(Product product) {
+        long start = UPDATE_PRODUCT.start();
+        try {
+            boolean updated = backend().products().update(product);
+            productCache.invalidate(product.getProductId());
+            if (updated && productCatalog.isLoaded()) {
+                productCatalog.put(product);
+            }
+            LowStockMonitor monitor = lowStockMonitor;
+            if (updated && monitor != null) {
+                monitor.stockChanged(product.getProductId());
+            }
+            return updated;
+        } catch (StorageException e) {
+            UPDATE_PRODUCT.error();
+            Log.error("Error updating product.", e, "productId", product.getProductId());
+        } finally {
+            UPDATE_PRODUCT.stop(start);
+        }
+        return false;
+    }
+
+    /**
+     * Deletes a Product.
+     *
+     * @param productId the product ID to delete
+     * @return true if successful, else false
+     */
+    public boolean deleteProduct(int productId) {
+        long start = DELETE_PRODUCT.start();
+        try {
+            boolean deleted = backend().products().delete(productId);
+            productCache.invalidate(productId);
+            if (deleted) {
+                productCatalog.remove(productId);
+            }
+            return deleted;
+        } catch (StorageException e) {
+            DELETE_PRODUCT.error();
+            Log.error("Error deleting product.", e, "productId", productId);
+        } finally {
+            DELETE_PRODUCT.stop(start);
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves all products.
+     *
+     * @return list of all Product objects
+     */
+    public List<Product> getAllProducts() {
+        long start = GET_ALL_PRODUCTS.start();
+        try {
+            if (useCatalog()) {
+                return productCatalog.search(null, null, null, null);
+            }
+            try {
+                return loadAllProducts();
+            } catch (StorageException e) {
+                GET_ALL_PRODUCTS.error();
+                Log.error("Error retrieving all products.", e);
+            }
+            return new ArrayList<>();
+        } finally {
+            GET_ALL_PRODUCTS.stop(start);
+        }
+    }
+
+    /**
+     * Returns one page of all products, ordered by product ID.
+     *
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit  the page size, 1 to {@link Page#MAX_LIMIT}
+     * @return the page; empty if the products cannot be read
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page<Product> getAllProducts(String cursor, int limit) {
+        long start = GET_ALL_PRODUCTS_PAGE.start();
+        try {
+            return searchProductPage(null, null, null, null, cursor, limit, GET_ALL_PRODUCTS_PAGE);
+        } finally {
+            GET_ALL_PRODUCTS_PAGE.stop(start);
+        }
+    }
+
+    /**
+     * Reads every product from the backend.
+     *
+     * @return list of all Product objects
+     * @throws StorageException if the read fails
+     */
+    private List<Product> loadAllProducts() throws StorageException {
+        return backend().products().findAll();
+    }
+
+    /**
+     * Searches for products based on optional search parameters.
+     *
+     * @param productId        the product ID to search for (optional)
+     * @param name             the product name keyword to search for (optional)
+     * @param priceLessThan    the maximum price (optional)
+     * @param priceGreaterThan the minimum price (optional)
+     * @return List of matching Product objects
+     */
+    public List<Product> searchProducts(Integer productId, String name, Double priceLessThan, Double priceGreaterThan) {
+        long start = SEARCH_PRODUCTS.start();
+        try {
+            if (useCatalog()) {
+                return productCatalog.search(productId, name, priceLessThan, priceGreaterThan);
+            }
+            try {
+                return backend().products().search(productId, name, priceLessThan, priceGreaterThan, null, Integer.MAX_VALUE);
+            } catch (StorageException e) {
+                SEARCH_PRODUCTS.error();
+                Log.error("Error searching products.", e);
+            }
+            return new ArrayList<>();
+        } finally {
+            SEARCH_PRODUCTS.stop(start);
+        }
+    }
+
+    /**
+     * Returns one page of a product search, ordered by product ID.
+     *
+     * @param productId        the product ID to search for (optional)
+     * @param name             the product name keyword to search for (optional)
+     * @param priceLessThan    the maximum price (optional)
+     * @param priceGreaterThan the minimum price (optional)
+     * @param cursor           the next cursor of the previous page, or null for the first page
+     * @param limit            the page size, 1 to {@link Page#MAX_LIMIT}
+     * @return the page; empty if the search fails
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page<Product> searchProducts(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                                        String cursor, int limit) {
+        long start = SEARCH_PRODUCTS_PAGE.start();
+        try {
+            return searchProductPage(productId, name, priceLessThan, priceGreaterThan, cursor, limit,
+                    SEARCH_PRODUCTS_PAGE);
+        } finally {
+            SEARCH_PRODUCTS_PAGE.stop(start);
+        }
+    }
+
+    /**
+     * Reads one page of products. One row more than the page size is read to learn whether
+     * another page follows. Storage errors are counted against the caller's timer.
+     */
+    private Page<Product> searchProductPage(Integer productId, String name, Double priceLessThan,
+                                            Double priceGreaterThan, String cursor, int limit,
+                                            Metrics.Timer timer) {
+        Integer afterProductId = Page.parseProductCursor(cursor);
+        int pageSize = Page.clampLimit(limit);
+        if (useCatalog()) {
+            return toPage(productCatalog.search(productId, name, priceLessThan, priceGreaterThan,
+                    afterProductId, pageSize + 1), pageSize, Page::productCursor);
+        }
+        try {
+            return toPage(backend().products().search(productId, name, priceLessThan, priceGreaterThan,
+                    afterProductId, pageSize + 1), pageSize, Page::productCursor);
+        } catch (StorageException e) {
+            timer.error();
+            Log.error("Error searching products.", e);
+        }
+        return new Page<>(new ArrayList<>(), null);
+    }
+
+    /**
+     * Runs the same search as {@link #searchProducts}, handing each match to the sink in
+     * product ID order as it is found instead of collecting a list, so a broad search needs no
+     * more memory than a narrow one.
+     *
+     * @param productId        the product ID to search for (optional)
+     * @param name             the product name keyword to search for (optional)
+     * @param priceLessThan    the maximum price (optional)
+     * @param priceGreaterThan the minimum price (optional)
+     * @param afterProductId   pass only products with a greater ID (optional, see {@link Page#parseProductCursor})
+     * @param limit            the maximum number of products to pass; Integer.MAX_VALUE for all
+     * @param sink             receives the matching products
+     * @return true if the search completed, false if the backend failed part-way
+     * @throws IOException if the sink fails
+     */
+    public boolean searchProductsInto(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                                      Integer afterProductId, int limit, ProductSink sink) throws IOException {
+        long start = SEARCH_PRODUCTS_INTO.start();
+        try {
+            if (useCatalog()) {
+                productCatalog.searchInto(productId, name, priceLessThan, priceGreaterThan, afterProductId, limit, sink);
+                return true;
+            }
+            try {
+                backend().products().searchInto(productId, name, priceLessThan, priceGreaterThan, afterProductId, limit, sink);
+                return true;
+            } catch (StorageException e) {
+                SEARCH_PRODUCTS_INTO.error();
+                Log.error("Error searching products.", e);
+                return false;
+            }
+        } finally {
+            SEARCH_PRODUCTS_INTO.stop(start);
+        }
+    }
+
+
+    // ----------------------------
+    // Customer Management
+    // ----------------------------
+
+    /**
+     * Creates a new Customer.
+     *
+     * @param customer the Customer object to create
+     * @return true if successful, else false
+     */
+    public boolean createCustomer(Customer customer) {
+        long start = CREATE_CUSTOMER.start();
+        try {
+            backend().customers().create(customer);
+            Log.debug("Customer created.", "customerId", customer.getId(), "userId", customer.getUserId());
+            return true;
+        } catch (StorageException e) {
+            CREATE_CUSTOMER.error();
+            Log.error("Error creating customer.", e);
+            return false;
+        } finally {
+            CREATE_CUSTOMER.stop(start);
+        }
+    }
+
+    /**
+     * Retrieves a Customer by userId.
+     *
+     * @param userId the associated user ID
+     * @return Customer object if found, else null
+     */
+    public Customer getCustomerByUserId(int userId) {
+        long start = GET_CUSTOMER_BY_USER_ID.start();
+        try {
+            return backend().customers().findByUserId(userId);
+        } catch (StorageException e) {
+            GET_CUSTOMER_BY_USER_ID.error();
+            Log.error("Error finding customer.", e, "userId", userId);
+        } finally {
+            GET_CUSTOMER_BY_USER_ID.stop(start);
+        }
+        return null;
+    }
+
+    /**
+     * Updates a Customer's profile information.
+     *
+     * @param customer the Customer object with updated profile
+     * @return true if successful, else false
+     */
+    public boolean updateCustomerProfile(Customer customer) {
+        long start = UPDATE_CUSTOMER_PROFILE.start();
+        try {
+            backend().customers().updateProfile(customer);
+            Log.debug("Customer profile updated.", "userId", customer.getUserId());
+            return true;
+        } catch (StorageException e) {
+            UPDATE_CUSTOMER_PROFILE.error();
+            Log.error("Error updating customer profile.", e);
+            return false;
+        } finally {
+            UPDATE_CUSTOMER_PROFILE.stop(start);
+        }
+    }
+
+    /**
+     * Updates a Customer's payment methods.
+     *
+     * @param userId         the associated user ID
+     * @param paymentMethods the updated list of PaymentMethod objects
+     * @return true if successful, else false
+     */
+    public boolean updateCustomerPaymentMethods(int userId, List<PaymentMethod> paymentMethods) {
+        long start = UPDATE_CUSTOMER_PAYMENT_METHODS.start();
+        try {
+            backend().customers().updatePaymentMethods(userId, paymentMethods);
+            Log.debug("Customer payment methods updated.", "userId", userId);
+            return true;
+        } catch (StorageException e) {
+            UPDATE_CUSTOMER_PAYMENT_METHODS.error();
+            Log.error("Error updating customer payment methods.", e, "userId", userId);
+            return false;
+        } finally {
+            UPDATE_CUSTOMER_PAYMENT_METHODS.stop(start);
+        }
+    }
+
+    // ----------------------------
+    // Stock Reservations
+    // ----------------------------
+
+    /**
+     * Reserves stock for a cart line, so other carts in this process cannot take it before
+     * checkout. Pass the reservation ID on the line's {@link OrderLine} at checkout, or release
+     * it when the line leaves the cart; otherwise it expires after -Dstock.reservation.ttlMs.
+     *
+     * @param productId the ID of the product
+     * @param quantity  the quantity to reserve
+     * @return the reservation ID, or null if the product does not exist or less than quantity is
+     *         available
+     */
+    public String reserveStock(int productId, int quantity) {
+        long start = RESERVE_STOCK.start();
+        try {
+            Product product = currentProduct(productId);
+            return product != null ? reservations.reserve(productId, quantity, product.getStock()) : null;
+        } finally {
+            RESERVE_STOCK.stop(start);
+        }
+    }
+
+    /**
+     * Releases a stock reservation.
+     *
+     * @param reservationId the reservation ID returned by {@link #reserveStock(int, int)}
+     * @return true if it was held, false if it was already released or has expired
+     */
+    public boolean releaseStockReservation(String reservationId) {
+        long start = RELEASE_STOCK_RESERVATION.start();
+        try {
+            return reservations.release(reservationId);
+        } finally {
+            RELEASE_STOCK_RESERVATION.stop(start);
+        }
+    }
+
+    /**
+     * Returns the stock of a product that is not reserved by an open cart.
+     *
+     * @param productId the ID of the product
+     * @return the available quantity, 0 if the product does not exist
+     */
+    public int getAvailableStock(int productId) {
+        long start = GET_AVAILABLE_STOCK.start();
+        try {
+            Product product = currentProduct(productId);
+            return product != null ? Math.max(0, product.getStock() - reservations.reservedFor(productId)) : 0;
+        } finally {
+            GET_AVAILABLE_STOCK.stop(start);
+        }
+    }
+
+    /**
+     * Returns the number of stock reservations held.
+     *
+     * @return the number of reservations
+     */
+    public int getStockReservationCount() {
+        return reservations.size();
+    }
+
+    /**
+     * Returns the number of stock reservations released because they expired.
+     *
+     * @return the number of expired reservations
+     */
+    public long getExpiredStockReservationCount() {
+        return reservations.getExpiredCount();
+    }
+
+    private Product currentProduct(int productId) {
+        // The catalog's stock follows every stock change made through this process
+        Product product = useCatalog() ? productCatalog.get(productId) : null;
+        return product != null ? product : findProductById(productId);
+    }
+
+    /**
+     * Releases the reservations of the lines that were placed; the stock they held is now taken.
+     */
+    private void releasePlacedReservations(List<OrderLine> lines, List<OrderLineResult> results) {
+        for (int i = 0; i < lines.size(); i++) {
+            String reservationId = lines.get(i).getReservationId();
+            if (reservationId != null && results.get(i).isPlaced()) {
+                reservations.release(reservationId);
+            }
+        }
+    }
+
+    // ----------------------------
+    // Order Management
+    // ----------------------------
+
+    /**
+     * Finds an order by its order ID.
+     *
+     * @param orderId the unique Order ID (e.g., "ORD-1234567890123456789")
+     * @return Order object if found; otherwise, null
+     */
+    public Order findOrderById(String orderId) {
+        long start = FIND_ORDER_BY_ID.start();
+        try {
+            Order order = backend().orders().findById(orderId);
+            if (order == null && outboxRelay() != null) {
+                // Placed moments ago and not relayed yet
+                order = backend().orderOutbox().findById(orderId);
+            }
+            return order;
+        } catch (StorageException e) {
+            FIND_ORDER_BY_ID.error();
+            Log.error("Error finding order by ID.", e, "orderId", orderId);
+        } finally {
+            FIND_ORDER_BY_ID.stop(start);
+        }
+        return null;
+    }
+
+    /**
+     * Places an order for a single product.
+     *
+     * @param userId    the ID of the user placing the order
+     * @param productId the ID of the product being ordered
+     * @param quantity  the quantity of the product
+     * @return true if successful, else false
+     */
+    public boolean placeOrder(int userId, int productId, int quantity) {
+        return placeOrder(null, userId, productId, quantity);
+    }
+
+    /**
+     * Places an order for a single product, at most once per idempotency key.
+     *
+     * @param idempotencyKey the key identifying this order across retries, or null for none
+     * @param userId         the ID of the user placing the order
+     * @param productId      the ID of the product being ordered
+     * @param quantity       the quantity of the product
+     * @return true if the order was placed, now or by an earlier call with the same key
+     */
+    public boolean placeOrder(String idempotencyKey, int userId, int productId, int quantity) {
+        long start = PLACE_ORDER.start();
+        try {
+            List<OrderLineResult> results = placeCartOrder(idempotencyKey, userId,
+                    List.of(new OrderLine(productId, quantity)));
+            return !results.isEmpty() && results.get(0).isPlaced();
+        } finally {
+            PLACE_ORDER.stop(start);
+        }
+    }
+
+    /**
+     * Places a whole cart.
+     *
+     * With the order outbox (the default), the stock of every line is taken and the orders for
+     * the lines that got it are recorded in one backend call, one MySQL transaction for the
+     * database backend, and the {@link OutboxRelay} copies the orders to the order store
+     * moments later. Without it (-Dorder.outbox.disabled=true), stock is decremented in one
+     * call and the orders written to the order store in another (one Mongo insertMany), and
+     * the stock is given back if that write fails. Either way lines are independent: a line
+     * without enough stock fails without affecting the others. A line can only take stock that
+     * no other cart has reserved (see {@link #reserveStock(int, int)}), plus whatever its own
+     * reservation holds. The reservations of placed lines are released; those of failed lines
+     * are kept for a retry, until the caller releases them or they expire.
+     *
+     * @param userId the ID of the user placing the order
+     * @param lines  the cart lines
+     * @return one result per line, in the same order
+     */
+    public List<OrderLineResult> placeCartOrder(int userId, List<OrderLine> lines) {
+        return placeCartOrder(null, userId, lines);
+    }
+
+    /**
+     * Places a whole cart at most once per idempotency key: a call repeating the key of a
+     * checkout that placed anything gets that checkout's results back from memory, without
+     * touching stock or orders (see {@link IdempotencyStore}).
+     *
+     * @param idempotencyKey the key identifying this checkout across retries, or null for none
+     * @param userId         the ID of the user placing the order
+     * @param lines          the cart lines
+     * @return one result per line, in the same order
+     */
+    public List<OrderLineResult> placeCartOrder(String idempotencyKey, int userId, List<OrderLine> lines) {
+        long start = PLACE_CART_ORDER.start();
+        try {
+            if (lines.isEmpty()) {
+                return new ArrayList<>();
+            }
+            if (idempotencyKey == null) {
+                return placeCartOrderOnce(userId, lines);
+            }
+            List<OrderLineResult> results = idempotencyStore.execute(idempotencyKey, userId, lines,
+                    () -> placeCartOrderOnce(userId, lines));
+            if (results == null) {
+                Log.warn("Idempotency key reused for a different order.", "userId", userId);
+                return failedLineResults(lines, "Idempotency key already used for a different order.");
+            }
+            return results;
+        } finally {
+            PLACE_CART_ORDER.stop(start);
+        }
+    }
+
+    private List<OrderLineResult> placeCartOrderOnce(int userId, List<OrderLine> lines) {
+        OutboxRelay relay = outboxRelay();
+        List<OrderLineResult> results = relay != null ? placeCartOrderThroughOutbox(userId, lines, relay)
+                : placeCartOrderDirectly(userId, lines);
+        // Lines that failed keep their holds for a retry; the caller releases them if it drops the cart
+        releasePlacedReservations(lines, results);
+        return results;
+    }
+
+    private List<OrderLineResult> placeCartOrderThroughOutbox(int userId, List<OrderLine> lines, OutboxRelay relay) {
+        // Step 1: Create Order IDs and orders for every line; ids of lines that fail go unused
+        Set<Integer> productIds = new LinkedHashSet<>();
+        for (OrderLine line : lines) {
+            productIds.add(line.getProductId());
+        }
+        Map<Integer, Product> products = findProductsByIds(productIds);
+        List<Order> orders = new ArrayList<>();
+        String[] orderIds = new String[lines.size()];
+        Date orderDate = new Date();
+        for (int i = 0; i < lines.size(); i++) {
+            OrderLine line = lines.get(i);
+            Product product = products.get(line.getProductId());
+            orderIds[i] = generateOrderId();
+            orders.add(new Order(orderIds[i], userId, line.getProductId(), line.getQuantity(), orderDate,
+                    "Pending", product != null ? product.getPrice() : 0.0));
+        }
+
+        // Step 2: Take the stock and record the orders in one transaction
+        boolean[] decremented;
+        try {
+            decremented = backend().orderOutbox().placeOrders(lines, reservations.stockToKeep(lines), orders);
+        } catch (StorageException e) {
+            PLACE_CART_ORDER.error();
+            Log.error("Error placing orders for cart.", e, "userId", userId, "lines", lines.size());
+            return failedLineResults(lines, "Could not update stock.");
+        }
+        inventory.applyCommitted(lines, decremented, -1);
+        invalidateCachedStock(lines, decremented);
+        noteStockChanged(lines, decremented);
+
+        // Step 3: Have the relay copy them to the order store (and the sales rollups) now
+        relay.wake();
+        return lineResults(userId, lines, decremented, true, orderIds);
+    }
+
+    private List<OrderLineResult> placeCartOrderDirectly(int userId, List<OrderLine> lines) {
+        // Step 1: Check stock availability and update stock, all lines at once
+        boolean[] decremented;
+        try {
+            decremented = backend().products().decrementStock(lines, reservations.stockToKeep(lines));
+        } catch (StorageException e) {
+            PLACE_CART_ORDER.error();
+            Log.error("Error updating product stock for cart.", e, "userId", userId, "lines", lines.size());
+            return failedLineResults(lines, "Could not update stock.");
+        }
+        inventory.applyCommitted(lines, decremented, -1);
+        invalidateCachedStock(lines, decremented);
+        noteStockChanged(lines, decremented);
+
+        // Step 2: Create Order IDs and orders for the lines that got their stock
+        Set<Integer> productIds = new LinkedHashSet<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (decremented[i]) {
+                productIds.add(lines.get(i).getProductId());
+            }
+        }
+        Map<Integer, Product> products = findProductsByIds(productIds);
+        List<Order> orders = new ArrayList<>();
+        String[] orderIds = new String[lines.size()];
+        Date orderDate = new Date();
+        for (int i = 0; i < lines.size(); i++) {
+            if (decremented[i]) {
+                OrderLine line = lines.get(i);
+                Product product = products.get(line.getProductId());
+                orderIds[i] = generateOrderId();
+                orders.add(new Order(orderIds[i], userId, line.getProductId(), line.getQuantity(), orderDate,
+                        "Pending", product != null ? product.getPrice() : 0.0));
+            }
+        }
+
+        // Step 3: Create the Orders in one round trip
+        boolean ordersCreated = orders.isEmpty() || createOrders(orders);
+        if (!ordersCreated) {
+            // If order creation fails, give the stock back
+            PLACE_CART_ORDER.error();
+            restoreProductStock(lines, decremented);
+            Log.warn("Failed to create orders; stock restored.", "userId", userId, "orders", orders.size());
+        } else if (!orders.isEmpty()) {
+            // Step 4: Add the orders to the sales rollups
+            recordSales(orders);
+        }
+        return lineResults(userId, lines, decremented, ordersCreated, orderIds);
+    }
+
+    private static List<OrderLineResult> lineResults(int userId, List<OrderLine> lines, boolean[] decremented,
+                                                     boolean ordersCreated, String[] orderIds) {
+        List<OrderLineResult> results = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            OrderLine line = lines.get(i);
+            if (!decremented[i]) {
+                results.add(new OrderLineResult(line.getProductId(), line.getQuantity(), false, null,
+                        "Product not found or insufficient stock."));
+            } else if (!ordersCreated) {
+                results.add(new OrderLineResult(line.getProductId(), line.getQuantity(), false, null,
+                        "Could not record order."));
+            } else {
+                Log.debug("Order placed.", "orderId", orderIds[i], "userId", userId);
+                results.add(new OrderLineResult(line.getProductId(), line.getQuantity(), true, orderIds[i],
+                        "Order placed."));
+            }
+        }
+        return results;
+    }
+
+    private static List<OrderLineResult> failedLineResults(List<OrderLine> lines, String message) {
+        List<OrderLineResult> results = new ArrayList<>();
+        for (OrderLine line : lines) {
+            results.add(new OrderLineResult(line.getProductId(), line.getQuantity(), false, null, message));
+        }
+        return results;
+    }
+
+    /**
+     * Gives back stock for the selected cart lines.
+     *
+     * @param lines    the cart lines
+     * @param selected which lines to give back
+     * @return true if successful, else false
+     */
+    private boolean restoreProductStock(List<OrderLine> lines, boolean[] selected) {
+        try {
+            backend().products().incrementStock(lines, selected);
+            inventory.applyCommitted(lines, selected, 1);
+            invalidateCachedStock(lines, selected);
+            return true;
+        } catch (StorageException e) {
+            Log.error("Error restoring product stock.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Drops the products whose stock changed from the product cache.
+     *
+     * @param lines    the cart lines
+     * @param selected which lines changed stock
+     */
+    private void invalidateCachedStock(List<OrderLine> lines, boolean[] selected) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (selected[i]) {
+                productCache.invalidate(lines.get(i).getProductId());
+            }
+        }
+    }
+
+    /**
+     * Generates a unique Order ID.
+     *
+     * @return a unique Order ID string
+     */
+    private String generateOrderId() {
+        return orderIdGenerator.nextOrderId();
+    }
+
+
+    /**
+     * Creates new Orders in a single write.
+     *
+     * @param orders the orders
+     * @return true if successful, else false
+     */
+    private boolean createOrders(List<Order> orders) {
+        try {
+            backend().orders().insertAll(orders);
+            Log.debug("Orders created.", "count", orders.size());
+            return true;
+        } catch (StorageException e) {
+            Log.error("Error creating orders.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Retrieves all Orders for a specific user.
+     *
+     * @param userId the user ID
+     * @return list of Order objects
+     */
+    public List<Order> getOrdersForUser(int userId) {
+        long start = GET_ORDERS_FOR_USER.start();
+        try {
+            return backend().orders().findByUserId(userId);
+        } catch (StorageException e) {
+            GET_ORDERS_FOR_USER.error();
+            Log.error("Error retrieving orders for user.", e, "userId", userId);
+        } finally {
+            GET_ORDERS_FOR_USER.stop(start);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Retrieves one page of a user's order history, newest first.
+     *
+     * @param userId the user ID
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit  the page size, 1 to {@link Page#MAX_LIMIT}
+     * @return the page; empty if the orders cannot be read
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page<Order> getOrdersForUser(int userId, String cursor, int limit) {
+        long start = GET_ORDERS_FOR_USER_PAGE.start();
+        try {
+            OrderCursor after = OrderCursor.parse(cursor);
+            int pageSize = Page.clampLimit(limit);
+            try {
+                return toPage(backend().orders().findByUserId(userId, after, pageSize + 1), pageSize,
+                        order -> OrderCursor.of(order).toString());
+            } catch (StorageException e) {
+                GET_ORDERS_FOR_USER_PAGE.error();
+                Log.error("Error retrieving orders for user.", e, "userId", userId);
+            }
+            return new Page<>(new ArrayList<>(), null);
+        } finally {
+            GET_ORDERS_FOR_USER_PAGE.stop(start);
+        }
+    }
+
+    /**
+     * Turns the rows read for a page (up to one more than the page size) into a Page.
+     *
+     * @param rows     the rows read, at most pageSize + 1
+     * @param pageSize the page size
+     * @param cursorOf the cursor that follows a given row
+     * @return the page, with a next cursor if a row beyond the page was read
+     */
+    private static <T> Page<T> toPage(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, pageSize));
+        return new Page<>(items, cursorOf.apply(items.get(pageSize - 1)));
+    }
+
+    // ----------------------------
+    // Refill Order Management
+    // ----------------------------
+
+    /**
+     * Creates a new Refill Order.
+     *
+     * @param productId the product ID to refill
+     * @param quantity  the quantity to reorder
+     * @return true if successful, else false
+     */
+    public boolean createRefillOrder(int productId, int quantity) {
+        long start = CREATE_REFILL_ORDER.start();
+        try {
+            backend().refillOrders().create(productId, quantity);
+            Log.info("Refill order created.", "productId", productId, "quantity", quantity);
+            return true;
+        } catch (StorageException e) {
+            CREATE_REFILL_ORDER.error();
+            Log.error("Error creating refill order.", e, "productId", productId);
+            return false;
+        } finally {
+            CREATE_REFILL_ORDER.stop(start);
+        }
+    }
+
+    // ----------------------------
+    // Sales Reporting
+    // ----------------------------
+
+    /**
+     * Generates a sales report for a given date range, both days inclusive.
+     *
+     * Totals come from the daily sales rollups rather than from the orders themselves, and
+     * revenue uses the price each order was placed at.
+     *
+     * @param startDateStr start date in "yyyy-MM-dd" format
+     * @param endDateStr   end date in "yyyy-MM-dd" format
+     * @return list of SalesData objects
+     */
+    public List<SalesData> generateSalesReport(String startDateStr, String endDateStr) {
+        long start = GENERATE_SALES_REPORT.start();
+        try {
+            List<SalesData> salesReport = new ArrayList<>();
+
+            // Parse dates
+            Date startDate = parseDate(startDateStr);
+            Date endDate = parseDate(endDateStr);
+
+            if (startDate == null || endDate == null) {
+                Log.warn("Invalid date format for sales report.", "startDate", startDateStr, "endDate", endDateStr);
+                return salesReport;
+            }
+
+            try {
+                backfillSalesRollupsIfNeeded();
+                List<SalesData> totals = backend().sales().dailyTotals(startDate, endDate);
+
+                // Fetch all product names in one lookup
+                Set<Integer> productIds = new LinkedHashSet<>();
+                for (SalesData data : totals) {
+                    productIds.add(data.getProductId());
+                }
+                Map<Integer, Product> products = findProductsByIds(productIds);
+
+                for (SalesData data : totals) {
+                    Product product = products.get(data.getProductId());
+                    if (product == null) {
+                        Log.warn("Product in sales report not found.", "productId", data.getProductId());
+                        continue;
+                    }
+
+                    salesReport.add(new SalesData(data.getProductId(), product.getName(),
+                            data.getTotalQuantitySold(), data.getTotalSalesAmount()));
+                }
+            } catch (StorageException e) {
+                GENERATE_SALES_REPORT.error();
+                Log.error("Error generating sales report.", e);
+            }
+
+            return salesReport;
+        } finally {
+            GENERATE_SALES_REPORT.stop(start);
+        }
+    }
+
+    /**
+     * Adds newly created orders to the sales rollups. Failures are logged only; the rollups can
+     * be recomputed with {@link #rebuildSalesRollups()}.
+     *
+     * @param orders the orders that were created
+     */
+    private void recordSales(List<Order> orders) {
+        try {
+            backend().sales().record(orders);
+        } catch (StorageException e) {
+            Log.error("Error updating sales rollups.", e);
+        }
+    }
+
+    /**
+     * Builds the sales rollups from existing orders the first time a report is requested
+     * against a store that has never been backfilled. The store's own marker decides, not
+     * whether any rollups exist: checkouts record sales from the moment the backend opens, so
+     * rollups can be present while still missing every order placed before them.
+     *
+     * @throws StorageException if the rollups cannot be read or rebuilt
+     */
+    private void backfillSalesRollupsIfNeeded() throws StorageException {
+        if (salesRollupChecked) {
+            return;
+        }
+        synchronized (this) {
+            if (!salesRollupChecked) {
+                SalesRepository sales = backend().sales();
+                if (!sales.isBackfilled()) {
+                    sales.rebuild();
+                }
+                salesRollupChecked = true;
+            }
+        }
+    }
+
+    /**
+     * Recomputes the sales rollups from the stored orders.
+     *
+     * @return the number of orders read, or -1 on error
+     */
+    public long rebuildSalesRollups() {
+        long start = REBUILD_SALES_ROLLUPS.start();
+        try {
+            return backend().sales().rebuild();
+        } catch (StorageException e) {
+            REBUILD_SALES_ROLLUPS.error();
+            Log.error("Error rebuilding sales rollups.", e);
+            return -1;
+        } finally {
+            REBUILD_SALES_ROLLUPS.stop(start);
+        }
+    }
+
+
+    /**
+     * Helper method to parse a date string into a Date object.
+     *
+     * @param dateStr the date string in "yyyy-MM-dd" format
+     * @return Date object if parsing is successful, else null
+     */
+    private static Date parseDate(String dateStr) {
+        try {
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+            sdf.setLenient(false); // Strict parsing
+            return sdf.parse(dateStr);
+        } catch (ParseException e) {
+            Log.debug("Date parsing error.", "date", dateStr, "error", e.getMessage());
+            return null;
+        }
+    }
+
+    // ----------------------------
+    // Helper Methods
+    // ----------------------------
+
+    /**
+     * Checks if a customer profile exists for a given user_id.
+     *
+     * @param userId the user ID to check
+     * @return true if the user_id exists, else false
+     */
+    public boolean isUserIdInMongoDB(int userId) {
+        long start = IS_USER_ID_IN_MONGODB.start();
+        try {
+            return backend().customers().exists(userId);
+        } catch (StorageException e) {
+            IS_USER_ID_IN_MONGODB.error();
+            Log.error("Error checking customer.", e, "userId", userId);
+            return false;
+        } finally {
+            IS_USER_ID_IN_MONGODB.stop(start);
+        }
+    }
+
+    // ----------------------------
+    // Closing Connections
+    // ----------------------------
+
+    /**
+     * Stops the service's background threads and closes the storage backend (database
+     * connections, pooled or not), if one was created.
+     */
+    public synchronized void close() {
+        productCatalog.stopPeriodicReload();
+        Log.info("Product cache stats.", "stats", productCache.getStats());
+        stopOutboxRelay(); // Relays what is left before the connections go
+        stopLowStockMonitor();
+        reservations.close();
+        if (backend != null) {
+            backend.close();
+        }
+    }
+}
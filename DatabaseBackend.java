@@ -0,0 +1,124 @@
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.client.MongoDatabase;
+
+/**
+ * The production backend: users and products in MySQL, everything else in MongoDB.
+ */
+public class DatabaseBackend implements StorageBackend {
+    // ----------------------------
+    // MySQL Connection Details
+    // ----------------------------
+    // rewriteBatchedStatements lets the driver send a whole executeBatch() in one round trip
+    private static final String JDBC_URL =
+            "jdbc:mysql://localhost:3306/retail_store?useSSL=false&serverTimezone=UTC&rewriteBatchedStatements=true";
+    private static final String DB_USER = "root"; // Replace with your MySQL username
+    private static final String DB_PASSWORD = "pass"; // Replace with your MySQL password
+
+    // ----------------------------
+    // MySQL Connection Pool
+    // ----------------------------
+    // Sizes can be overridden with -Ddb.pool.minSize=... etc. when tuning under load
+    private static final int POOL_MIN_SIZE = Integer.getInteger("db.pool.minSize", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("db.pool.maxSize", 20);
+    private static final long POOL_ACQUIRE_TIMEOUT_MS = Long.getLong("db.pool.acquireTimeoutMs", 5000L);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("db.pool.idleTimeoutMs", 300000L);
+    private static final long POOL_LEAK_THRESHOLD_MS = Long.getLong("db.pool.leakThresholdMs", 30000L);
+
+    // ----------------------------
+    // MongoDB Connection Details
+    // ----------------------------
+    private static final String MONGO_URI = "mongodb://localhost:27017";
+    private static final String MONGO_DB_NAME = "retail_store_mongo";
+
+    private final ConnectionPool connectionPool;
+    private final MongoClient mongoClient;
+    private final MongoDatabase mongoDatabase;
+
+    private final UserRepository users;
+    private final ProductRepository products;
+    private final CustomerRepository customers;
+    private final OrderRepository orders;
+    private final RefillOrderRepository refillOrders;
+    private final SalesRepository sales;
+    private final OrderOutbox orderOutbox;
+
+    public DatabaseBackend() {
+        connectionPool = new ConnectionPool(JDBC_URL, DB_USER, DB_PASSWORD, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                POOL_ACQUIRE_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_LEAK_THRESHOLD_MS);
+        mongoClient = new MongoClient(new MongoClientURI(MONGO_URI));
+        mongoDatabase = mongoClient.getDatabase(MONGO_DB_NAME);
+        Log.info("MongoDB connection established.");
+        MongoIndexes.ensure(mongoDatabase);
+
+        users = new MySqlUserRepository(connectionPool);
+        products = new MySqlProductRepository(connectionPool);
+        customers = new MongoCustomerRepository(mongoDatabase);
+        orders = new MongoOrderRepository(mongoDatabase);
+        refillOrders = new MongoRefillOrderRepository(mongoDatabase);
+        sales = new SalesRollup(mongoDatabase);
+        orderOutbox = new MySqlOrderOutbox(connectionPool);
+    }
+
+    @Override
+    public String getName() {
+        return "database";
+    }
+
+    @Override
+    public UserRepository users() {
+        return users;
+    }
+
+    @Override
+    public ProductRepository products() {
+        return products;
+    }
+
+    @Override
+    public CustomerRepository customers() {
+        return customers;
+    }
+
+    @Override
+    public OrderRepository orders() {
+        return orders;
+    }
+
+    @Override
+    public RefillOrderRepository refillOrders() {
+        return refillOrders;
+    }
+
+    @Override
+    public SalesRepository sales() {
+        return sales;
+    }
+
+    @Override
+    public OrderOutbox orderOutbox() {
+        return orderOutbox;
+    }
+
+    public MongoDatabase getMongoDatabase() {
+        return mongoDatabase;
+    }
+
+    /**
+     * Returns a snapshot of the MySQL connection pool counters, for sizing the pool.
+     *
+     * @return PoolStats snapshot
+     */
+    public ConnectionPool.PoolStats getPoolStats() {
+        return connectionPool.getStats();
+    }
+
+    @Override
+    public void close() {
+        mongoClient.close();
+        Log.info("MongoDB connection closed.");
+        Log.info("MySQL connection pool stats.", "stats", connectionPool.getStats());
+        connectionPool.close();
+        Log.info("MySQL connection pool closed.");
+    }
+}
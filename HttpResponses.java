@@ -0,0 +1,342 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes HTTP response bodies for all handlers, compressing them when it pays off.
+ *
+ * Bodies of at least -Dhttp.compression.minBytes bytes (default 1024) are sent gzip- or
+ * deflate-encoded if the request's Accept-Encoding allows it, preferring gzip; smaller bodies,
+ * where the headers and CPU cost outweigh the saving, go out as they are. Deflater instances
+ * hold about 256 KB of native memory each and are expensive to create, so they are kept in a
+ * small shared pool and reset between responses instead of being created per request. (A pool
+ * rather than one per thread, since with virtual threads there may be a thread per request.)
+ */
+public class HttpResponses {
+    private static final int MIN_COMPRESS_BYTES = Integer.getInteger("http.compression.minBytes", 1024);
+    private static final int COMPRESSION_LEVEL = Integer.getInteger("http.compression.level", Deflater.DEFAULT_COMPRESSION);
+    private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    // Size of each chunk of a streamed response
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    // Fixed 10-byte gzip member header: magic, CM=deflate, no flags, no mtime, no XFL, OS unknown
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    // Raw deflate streams for gzip, zlib-wrapped streams for "deflate"
+    private static final BlockingQueue<Deflater> rawDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private HttpResponses() {
+    }
+
+    /**
+     * Sends an HTTP response with the given status code and body, compressed if the client
+     * accepts it and the body is large enough. Sets a plain-text Content-Type unless the
+     * handler has already set one.
+     *
+     * @param exchange   the HttpExchange object
+     * @param statusCode the HTTP status code
+     * @param response   the response body
+     * @throws IOException if the response cannot be written
+     */
+    public static void send(HttpExchange exchange, int statusCode, String response) throws IOException {
+        send(exchange, statusCode, response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends an HTTP response with the given status code and body bytes.
+     *
+     * @param exchange   the HttpExchange object
+     * @param statusCode the HTTP status code
+     * @param body       the response body
+     * @throws IOException if the response cannot be written
+     * @see #send(HttpExchange, int, String)
+     */
+    public static void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        if (!headers.containsKey("Content-Type")) {
+            headers.set("Content-Type", "text/plain; charset=UTF-8");
+        }
+
+        byte[] payload = body;
+        if (body.length >= MIN_COMPRESS_BYTES) {
+            // The representation depends on Accept-Encoding from here on, compressed or not
+            headers.add("Vary", "Accept-Encoding");
+            String encoding = negotiateEncoding(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            if (encoding != null) {
+                payload = GZIP.equals(encoding) ? gzip(body) : deflate(body);
+                headers.set("Content-Encoding", encoding);
+            }
+        }
+
+        exchange.sendResponseHeaders(statusCode, payload.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(payload);
+        }
+    }
+
+    /**
+     * Starts a response whose length is not known up front and returns the stream to write its
+     * body to. The body goes out with chunked transfer encoding as it is written, gzip- or
+     * deflate-encoded if the client accepts it, so the whole body never has to be held in
+     * memory. Set Content-Type before calling this. Closing the stream ends the response.
+     *
+     * @param exchange   the HttpExchange object
+     * @param statusCode the HTTP status code
+     * @return a buffered stream for the response body
+     * @throws IOException if the headers cannot be sent
+     */
+    public static OutputStream stream(HttpExchange exchange, int statusCode) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.add("Vary", "Accept-Encoding");
+        String encoding = negotiateEncoding(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        if (encoding != null) {
+            headers.set("Content-Encoding", encoding);
+        }
+        // A length of 0 selects chunked transfer encoding
+        exchange.sendResponseHeaders(statusCode, 0);
+
+        OutputStream body = exchange.getResponseBody();
+        if (encoding == null) {
+            return new BufferedOutputStream(body, STREAM_BUFFER_SIZE);
+        }
+        boolean gzip = GZIP.equals(encoding);
+        return new PooledDeflaterOutputStream(body, gzip ? rawDeflaters : zlibDeflaters, gzip);
+    }
+
+    // ----------------------------
+    // Content Negotiation
+    // ----------------------------
+
+    /**
+     * Picks the content coding for a response from an Accept-Encoding header.
+     *
+     * @param acceptEncoding the header value, or null
+     * @return "gzip", "deflate", or null to send the body unencoded
+     */
+    static String negotiateEncoding(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzipQ = -1;
+        double deflateQ = -1;
+        double wildcardQ = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+                gzipQ = q;
+            } else if (coding.equals(DEFLATE)) {
+                deflateQ = q;
+            } else if (coding.equals("*")) {
+                wildcardQ = q;
+            }
+        }
+        // Codings not listed take the wildcard's weight, if there is one
+        if (gzipQ < 0) {
+            gzipQ = wildcardQ;
+        }
+        if (deflateQ < 0) {
+            deflateQ = wildcardQ;
+        }
+        if (gzipQ > 0 && gzipQ >= deflateQ) {
+            return GZIP;
+        }
+        return deflateQ > 0 ? DEFLATE : null;
+    }
+
+    /**
+     * Picks the media type for a response from an Accept header, honouring q-values and the
+     * "type/*" and "*&#47;*" ranges; the most specific range that matches a type sets its weight.
+     * Ties go to the type offered first.
+     *
+     * @param accept  the header value, or null
+     * @param offered the media types the handler can produce, preferred first
+     * @return the chosen type; the first offered if the header is absent or matches none of them
+     */
+    static String negotiateMediaType(String accept, String... offered) {
+        if (accept == null || accept.isEmpty()) {
+            return offered[0];
+        }
+        String best = null;
+        double bestQ = 0;
+        for (String type : offered) {
+            double q = mediaTypeWeight(accept, type);
+            if (q > bestQ) {
+                best = type;
+                bestQ = q;
+            }
+        }
+        return best != null ? best : offered[0];
+    }
+
+    /**
+     * The weight an Accept header gives a media type: that of the most specific matching range,
+     * or 0 if none matches.
+     */
+    private static double mediaTypeWeight(String accept, String type) {
+        String subtypeWildcard = type.substring(0, type.indexOf('/') + 1) + "*";
+        double q = 0;
+        int specificity = -1;
+        for (String part : accept.split(",")) {
+            String[] params = part.split(";");
+            String range = params[0].trim().toLowerCase(Locale.ROOT);
+            int rangeSpecificity = range.equals(type) ? 2 : range.equals(subtypeWildcard) ? 1 : range.equals("*/*") ? 0 : -1;
+            if (rangeSpecificity <= specificity) {
+                continue;
+            }
+            double rangeQ = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        rangeQ = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        rangeQ = 0;
+                    }
+                }
+            }
+            q = rangeQ;
+            specificity = rangeSpecificity;
+        }
+        return q;
+    }
+
+    // ----------------------------
+    // Compression
+    // ----------------------------
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 32);
+        out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        compress(rawDeflaters, true, body, out);
+
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        byte[] trailer = gzipTrailer(crc.getValue(), body.length);
+        out.write(trailer, 0, trailer.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 16);
+        compress(zlibDeflaters, false, body, out);
+        return out.toByteArray();
+    }
+
+    private static void compress(BlockingQueue<Deflater> pool, boolean nowrap, byte[] body, ByteArrayOutputStream out) {
+        Deflater deflater = borrow(pool, nowrap);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] buffer = new byte[Math.min(8192, Math.max(512, body.length / 2))];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            release(pool, deflater);
+        }
+    }
+
+    private static Deflater borrow(BlockingQueue<Deflater> pool, boolean nowrap) {
+        Deflater deflater = pool.poll();
+        return deflater != null ? deflater : new Deflater(COMPRESSION_LEVEL, nowrap);
+    }
+
+    private static void release(BlockingQueue<Deflater> pool, Deflater deflater) {
+        deflater.reset();
+        if (!pool.offer(deflater)) {
+            // Pool is full: free the native memory now rather than at finalization
+            deflater.end();
+        }
+    }
+
+    /**
+     * The 8-byte gzip trailer: CRC-32 and uncompressed length modulo 2^32, little-endian.
+     */
+    private static byte[] gzipTrailer(long crc, long length) {
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (crc >>> (i * 8));
+            trailer[i + 4] = (byte) (length >>> (i * 8));
+        }
+        return trailer;
+    }
+
+    /**
+     * Compresses a streamed body with a pooled Deflater, adding the gzip header and trailer
+     * when asked to, and returns the Deflater to its pool when closed.
+     */
+    private static class PooledDeflaterOutputStream extends DeflaterOutputStream {
+        private final BlockingQueue<Deflater> pool;
+        private final CRC32 crc;
+        private long uncompressedBytes;
+        private boolean closed;
+
+        PooledDeflaterOutputStream(OutputStream out, BlockingQueue<Deflater> pool, boolean gzip) throws IOException {
+            super(out, borrow(pool, gzip), STREAM_BUFFER_SIZE);
+            this.pool = pool;
+            this.crc = gzip ? new CRC32() : null;
+            if (gzip) {
+                out.write(GZIP_HEADER);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            if (crc != null) {
+                crc.update(b, off, len);
+                uncompressedBytes += len;
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!def.finished()) {
+                super.finish();
+                if (crc != null) {
+                    out.write(gzipTrailer(crc.getValue(), uncompressedBytes));
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                release(pool, def);
+            }
+        }
+    }
+}
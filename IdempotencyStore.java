@@ -0,0 +1,266 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the results of checkouts by idempotency key, so a checkout that is sent again
+ * (a client retry, a double click) returns the first result instead of placing the orders twice.
+ *
+ * The caller picks a key per checkout, e.g. a random UUID, and sends the same key with every
+ * retry of it. The first call with a key runs the checkout; a call that arrives while it is
+ * still running waits for it; later calls get a copy of the recorded result straight from
+ * memory. A result in which no line was placed is not recorded, since running that checkout
+ * again cannot duplicate anything and may succeed once stock is back.
+ *
+ * Keys are kept in a fixed set of segments, each a small insertion-ordered LinkedHashMap under
+ * its own lock, like {@link ProductCache}. A key is forgotten after its time-to-live, or
+ * earlier when its segment is full and it is the oldest one there. Keys are only known to this
+ * process.
+ */
+public class IdempotencyStore {
+    private static final int SEGMENTS = 16;
+
+    /**
+     * Runs the checkout the first time a key is seen.
+     */
+    public interface Checkout {
+        List<OrderLineResult> run();
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final AtomicLong replays = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * @param maxSize the maximum number of keys remembered; 0 disables deduplication
+     * @param ttlMs   how long a key is remembered, in milliseconds
+     */
+    public IdempotencyStore(int maxSize, long ttlMs) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = ttlMs * 1_000_000L;
+        int perSegment = (this.maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Runs a checkout unless one with the same key has already been placed.
+     *
+     * @param key      the idempotency key
+     * @param userId   the ID of the user placing the order
+     * @param lines    the cart lines
+     * @param checkout places the orders
+     * @return the checkout's results, a copy of the recorded ones for a repeated key, or null if
+     *         the key was already used for a different user or cart
+     */
+    public List<OrderLineResult> execute(String key, int userId, List<OrderLine> lines, Checkout checkout) {
+        if (maxSize == 0) {
+            return checkout.run();
+        }
+        String request = describe(userId, lines);
+        Segment segment = segmentFor(key);
+        while (true) {
+            Entry entry;
+            boolean owner = false;
+            synchronized (segment) {
+                long now = System.nanoTime();
+                segment.expire(now);
+                entry = segment.entries.get(key);
+                if (entry == null) {
+                    entry = new Entry(request, now);
+                    segment.entries.put(key, entry);
+                    owner = true;
+                } else if (!entry.request.equals(request)) {
+                    conflicts.incrementAndGet();
+                    return null;
+                } else if (entry.results != null) {
+                    replays.incrementAndGet();
+                    return copyOf(entry.results);
+                }
+            }
+
+            if (owner) {
+                return runAndRecord(segment, key, entry, checkout);
+            }
+            // The same checkout is running on another thread; use its result if it records one
+            try {
+                entry.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return failedResults(lines);
+            }
+        }
+    }
+
+    private List<OrderLineResult> runAndRecord(Segment segment, String key, Entry entry, Checkout checkout) {
+        List<OrderLineResult> results = null;
+        try {
+            results = checkout.run();
+            return results;
+        } finally {
+            synchronized (segment) {
+                if (results != null && anyPlaced(results)) {
+                    entry.results = copyOf(results);
+                } else if (segment.entries.get(key) == entry) {
+                    segment.entries.remove(key);
+                }
+            }
+            entry.done.countDown();
+        }
+    }
+
+    /**
+     * Returns the number of remembered keys, including any that have expired but not yet been
+     * cleared out.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns a snapshot of the store's counters.
+     *
+     * @return IdempotencyStats snapshot
+     */
+    public IdempotencyStats getStats() {
+        return new IdempotencyStats(maxSize, size(), replays.get(), conflicts.get(), evictions.get(),
+                expirations.get());
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static String describe(int userId, List<OrderLine> lines) {
+        StringBuilder request = new StringBuilder().append(userId);
+        for (OrderLine line : lines) {
+            request.append(';').append(line.getProductId()).append('x').append(line.getQuantity());
+        }
+        return request.toString();
+    }
+
+    private static boolean anyPlaced(List<OrderLineResult> results) {
+        for (OrderLineResult result : results) {
+            if (result.isPlaced()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<OrderLineResult> copyOf(List<OrderLineResult> results) {
+        List<OrderLineResult> copy = new ArrayList<>(results.size());
+        for (OrderLineResult r : results) {
+            copy.add(new OrderLineResult(r.getProductId(), r.getQuantity(), r.isPlaced(), r.getOrderId(), r.getMessage()));
+        }
+        return copy;
+    }
+
+    private static List<OrderLineResult> failedResults(List<OrderLine> lines) {
+        List<OrderLineResult> results = new ArrayList<>();
+        for (OrderLine line : lines) {
+            results.add(new OrderLineResult(line.getProductId(), line.getQuantity(), false, null,
+                    "Interrupted while waiting for the same order."));
+        }
+        return results;
+    }
+
+    private class Segment {
+        private final LinkedHashMap<String, Entry> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Removes expired keys. Keys are in the order they were added, so only the oldest ones
+         * need looking at.
+         */
+        void expire(long now) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (now - entry.createdAt < ttlNanos) {
+                    return;
+                }
+                it.remove();
+                expirations.incrementAndGet();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String request;
+        private final long createdAt;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private List<OrderLineResult> results; // Set once the checkout placed something
+
+        Entry(String request, long createdAt) {
+            this.request = request;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Point-in-time idempotency store counters.
+     */
+    public static class IdempotencyStats {
+        private final int maxSize;
+        private final int size;
+        private final long replays;
+        private final long conflicts;
+        private final long evictions;
+        private final long expirations;
+
+        public IdempotencyStats(int maxSize, int size, long replays, long conflicts, long evictions,
+                                long expirations) {
+            this.maxSize = maxSize;
+            this.size = size;
+            this.replays = replays;
+            this.conflicts = conflicts;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getMaxSize() { return maxSize; }
+        public int getSize() { return size; }
+        public long getReplays() { return replays; }
+        public long getConflicts() { return conflicts; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+
+        @Override
+        public String toString() {
+            return "size=" + size + "/" + maxSize + ", replays=" + replays + ", conflicts=" + conflicts
+                    + ", evictions=" + evictions + ", expirations=" + expirations;
+        }
+    }
+}
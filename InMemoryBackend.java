@@ -0,0 +1,656 @@
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A backend that keeps everything in this process's memory, for load tests and benchmarks.
+ *
+ * It behaves like the database backend as seen through the repository interfaces: products are
+ * returned as copies ordered by id, name searches are case-insensitive substring matches, stock
+ * decrements are conditional and atomic per product, and sales are kept in daily and hourly
+ * buckets. Nothing is persisted; a fresh instance is seeded with sample data (see
+ * {@link #InMemoryBackend()}) so the whole server can run on a machine without MySQL or MongoDB.
+ */
+public class InMemoryBackend implements StorageBackend {
+    // Number of sample products created at startup; override with -Dstore.memory.seedProducts=...
+    private static final int SEED_PRODUCTS = Integer.getInteger("store.memory.seedProducts", 1000);
+    // Password of the sample "manager", "cashier" and "customer" users
+    private static final String SEED_PASSWORD = System.getProperty("store.memory.seedPassword", "password");
+
+    private final MemoryUserRepository users = new MemoryUserRepository();
+    private final MemoryProductRepository products = new MemoryProductRepository();
+    private final MemoryCustomerRepository customers = new MemoryCustomerRepository();
+    private final MemoryOrderRepository orders = new MemoryOrderRepository();
+    private final MemoryRefillOrderRepository refillOrders = new MemoryRefillOrderRepository();
+    private final MemorySalesRepository sales = new MemorySalesRepository(orders);
+    private final MemoryOrderOutbox orderOutbox = new MemoryOrderOutbox(products);
+
+    /**
+     * Creates a backend seeded with -Dstore.memory.seedProducts sample products and one user per
+     * role (manager, cashier, customer).
+     */
+    public InMemoryBackend() {
+        this(SEED_PRODUCTS, true);
+    }
+
+    /**
+     * @param seedProducts the number of sample products to create
+     * @param seedUsers    whether to create one sample user per role
+     */
+    public InMemoryBackend(int seedProducts, boolean seedUsers) {
+        seedProducts(seedProducts);
+        if (seedUsers) {
+            seedUsers();
+        }
+        Log.info("In-memory storage ready.", "sampleProducts", seedProducts);
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public UserRepository users() {
+        return users;
+    }
+
+    @Override
+    public ProductRepository products() {
+        return products;
+    }
+
+    @Override
+    public CustomerRepository customers() {
+        return customers;
+    }
+
+    @Override
+    public OrderRepository orders() {
+        return orders;
+    }
+
+    @Override
+    public RefillOrderRepository refillOrders() {
+        return refillOrders;
+    }
+
+    @Override
+    public SalesRepository sales() {
+        return sales;
+    }
+
+    @Override
+    public OrderOutbox orderOutbox() {
+        return orderOutbox;
+    }
+
+    @Override
+    public void close() {
+        Log.info("In-memory storage discarded.");
+    }
+
+    // ----------------------------
+    // Sample Data
+    // ----------------------------
+
+    private void seedProducts(int count) {
+        String[] adjectives = {"Fresh", "Organic", "Classic", "Premium", "Family", "Mini", "Crunchy", "Spicy"};
+        String[] nouns = {"Apples", "Bananas", "Bread", "Cheese", "Coffee", "Juice", "Pasta", "Rice",
+                "Soap", "Tea", "Tomatoes", "Yogurt"};
+        for (int i = 0; i < count; i++) {
+            String name = adjectives[i % adjectives.length] + " " + nouns[(i / adjectives.length) % nouns.length]
+                    + " " + (i + 1);
+            products.insert(name, "Sample product " + (i + 1), 0.99 + (i % 200) * 0.5, 100 + i % 900);
+        }
+    }
+
+    private void seedUsers() {
+        users.insert("manager", SEED_PASSWORD, "manager");
+        users.insert("cashier", SEED_PASSWORD, "cashier");
+        int customerId = users.insert("customer", SEED_PASSWORD, "customer");
+        customers.insert(new Customer(customerId, "Sample", "Customer", "customer@example.com", "555-0100",
+                List.of(new PaymentMethod("Credit Card", "**** **** **** 4242"))));
+    }
+
+    // ----------------------------
+    // Users
+    // ----------------------------
+
+    private static class MemoryUserRepository implements UserRepository {
+        private final Map<String, User> usersByName = new ConcurrentHashMap<>();
+        private final AtomicInteger nextUserId = new AtomicInteger(1);
+
+        @Override
+        public User findByUsername(String username) {
+            // Users are immutable, so they can be shared
+            return usersByName.get(username);
+        }
+
+        @Override
+        public int create(String username, String password, String role) throws StorageException {
+            int userId = insert(username, password, role);
+            if (userId == 0) {
+                throw new StorageException("Username already exists: " + username);
+            }
+            return userId;
+        }
+
+        /**
+         * @return the new user's ID, or 0 if the username is taken
+         */
+        int insert(String username, String password, String role) {
+            int userId = nextUserId.getAndIncrement();
+            return usersByName.putIfAbsent(username, new User(userId, username, password, role)) == null ? userId : 0;
+        }
+    }
+
+    // ----------------------------
+    // Products
+    // ----------------------------
+
+    private static class MemoryProductRepository implements ProductRepository {
+        // Ordered by id, like the results of the MySQL queries
+        private final ConcurrentSkipListMap<Integer, Product> productsById = new ConcurrentSkipListMap<>();
+        private final AtomicInteger nextProductId = new AtomicInteger(1);
+        // Guards each stored product; every read and write of its fields goes through its stripe
+        private final Inventory inventory = new Inventory(null, 64);
+
+        @Override
+        public Product findById(int productId) {
+            Product product = productsById.get(productId);
+            return product != null ? copy(product) : null;
+        }
+
+        @Override
+        public Map<Integer, Product> findByIds(Collection<Integer> productIds) {
+            Map<Integer, Product> found = new HashMap<>();
+            for (int productId : productIds) {
+                Product product = productsById.get(productId);
+                if (product != null) {
+                    found.put(productId, copy(product));
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public List<Product> findAll() {
+            List<Product> all = new ArrayList<>(productsById.size());
+            for (Product product : productsById.values()) {
+                all.add(copy(product));
+            }
+            return all;
+        }
+
+        @Override
+        public List<Product> search(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                                    Integer afterProductId, int limit) {
+            List<Product> matches = new ArrayList<>();
+            try {
+                searchInto(productId, name, priceLessThan, priceGreaterThan, afterProductId, limit, matches::add);
+            } catch (IOException e) {
+                // Adding to a list cannot fail
+                throw new UncheckedIOException(e);
+            }
+            return matches;
+        }
+
+        @Override
+        public void searchInto(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                               Integer afterProductId, int limit, ProductSink sink) throws IOException {
+            String keyword = name != null && !name.trim().isEmpty() ? name.trim().toLowerCase() : null;
+            // Pages start with a seek in the skip list, like the primary key seek in MySQL
+            NavigableMap<Integer, Product> range = afterProductId != null
+                    ? productsById.tailMap(afterProductId, false) : productsById;
+            Collection<Product> candidates = productId != null
+                    ? (range.containsKey(productId) ? List.of(range.get(productId)) : List.of())
+                    : range.values();
+            int passed = 0;
+            for (Product stored : candidates) {
+                if (passed >= limit) {
+                    break;
+                }
+                Product product = copy(stored);
+                if (keyword != null && !product.getName().toLowerCase().contains(keyword)) {
+                    continue;
+                }
+                if (priceLessThan != null && !(product.getPrice() < priceLessThan)) {
+                    continue;
+                }
+                if (priceGreaterThan != null && !(product.getPrice() > priceGreaterThan)) {
+                    continue;
+                }
+                sink.accept(product);
+                passed++;
+            }
+        }
+
+        @Override
+        public int add(Product product) {
+            return insert(product.getName(), product.getDescription(), product.getPrice(), product.getStock());
+        }
+
+        int insert(String name, String description, double price, int stock) {
+            int productId = nextProductId.getAndIncrement();
+            productsById.put(productId, new Product(productId, name, description, price, stock));
+            return productId;
+        }
+
+        @Override
+        public boolean update(Product product) {
+            Product stored = productsById.get(product.getProductId());
+            if (stored == null) {
+                return false;
+            }
+            ReentrantLock lock = inventory.lockFor(stored.getProductId());
+            lock.lock();
+            try {
+                stored.setName(product.getName());
+                stored.setDescription(product.getDescription());
+                stored.setPrice(product.getPrice());
+                stored.setStock(product.getStock());
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean delete(int productId) {
+            return productsById.remove(productId) != null;
+        }
+
+        @Override
+        public boolean[] decrementStock(List<OrderLine> lines, int[] stockToKeep) {
+            boolean[] decremented = new boolean[lines.size()];
+            for (int i = 0; i < lines.size(); i++) {
+                Product stored = productsById.get(lines.get(i).getProductId());
+                decremented[i] = stored != null
+                        && inventory.tryDecrement(stored, lines.get(i).getQuantity(), stockToKeep[i]);
+            }
+            return decremented;
+        }
+
+        @Override
+        public void incrementStock(List<OrderLine> lines, boolean[] selected) {
+            for (int i = 0; i < lines.size(); i++) {
+                Product stored = productsById.get(lines.get(i).getProductId());
+                if (selected[i] && stored != null) {
+                    inventory.increment(stored, lines.get(i).getQuantity());
+                }
+            }
+        }
+
+        private Product copy(Product stored) {
+            ReentrantLock lock = inventory.lockFor(stored.getProductId());
+            lock.lock();
+            try {
+                return new Product(stored.getProductId(), stored.getName(), stored.getDescription(),
+                        stored.getPrice(), stored.getStock());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ----------------------------
+    // Customers
+    // ----------------------------
+
+    private static class MemoryCustomerRepository implements CustomerRepository {
+        private final Map<Integer, Customer> customersByUserId = new ConcurrentHashMap<>();
+
+        @Override
+        public void create(Customer customer) {
+            insert(customer);
+        }
+
+        void insert(Customer customer) {
+            customer.setId(new ObjectId());
+            customersByUserId.put(customer.getUserId(), copy(customer));
+        }
+
+        @Override
+        public Customer findByUserId(int userId) {
+            Customer customer = customersByUserId.get(userId);
+            return customer != null ? copy(customer) : null;
+        }
+
+        @Override
+        public void updateProfile(Customer customer) {
+            customersByUserId.computeIfPresent(customer.getUserId(), (userId, stored) -> {
+                Customer updated = copy(stored);
+                updated.setFirstName(customer.getFirstName());
+                updated.setLastName(customer.getLastName());
+                updated.setEmail(customer.getEmail());
+                updated.setPhoneNumber(customer.getPhoneNumber());
+                return updated;
+            });
+        }
+
+        @Override
+        public void updatePaymentMethods(int userId, List<PaymentMethod> paymentMethods) {
+            customersByUserId.computeIfPresent(userId, (id, stored) -> {
+                Customer updated = copy(stored);
+                updated.setPaymentMethods(copyPaymentMethods(paymentMethods));
+                return updated;
+            });
+        }
+
+        @Override
+        public boolean exists(int userId) {
+            return customersByUserId.containsKey(userId);
+        }
+
+        private static Customer copy(Customer customer) {
+            Customer copy = new Customer(customer.getUserId(), customer.getFirstName(), customer.getLastName(),
+                    customer.getEmail(), customer.getPhoneNumber(), copyPaymentMethods(customer.getPaymentMethods()));
+            copy.setId(customer.getId());
+            return copy;
+        }
+
+        private static List<PaymentMethod> copyPaymentMethods(List<PaymentMethod> paymentMethods) {
+            List<PaymentMethod> copies = new ArrayList<>();
+            if (paymentMethods != null) {
+                for (PaymentMethod pm : paymentMethods) {
+                    copies.add(new PaymentMethod(pm.getType(), pm.getDetails()));
+                }
+            }
+            return copies;
+        }
+    }
+
+    // ----------------------------
+    // Orders
+    // ----------------------------
+
+    private static class MemoryOrderRepository implements OrderRepository {
+        private final Map<String, Order> ordersById = new ConcurrentHashMap<>();
+        // Each user's orders keyed by their position in the history, so a page is a seek
+        private final Map<Integer, ConcurrentSkipListMap<OrderCursor, Order>> ordersByUserId = new ConcurrentHashMap<>();
+
+        @Override
+        public Order findById(String orderId) {
+            Order order = ordersById.get(orderId);
+            return order != null ? copy(order) : null;
+        }
+
+        @Override
+        public List<Order> findByUserId(int userId) {
+            List<Order> userOrders = new ArrayList<>();
+            NavigableMap<OrderCursor, Order> stored = ordersByUserId.get(userId);
+            if (stored != null) {
+                for (Order order : stored.values()) {
+                    userOrders.add(copy(order));
+                }
+            }
+            return userOrders;
+        }
+
+        @Override
+        public List<Order> findByUserId(int userId, OrderCursor after, int limit) {
+            List<Order> userOrders = new ArrayList<>();
+            ConcurrentSkipListMap<OrderCursor, Order> stored = ordersByUserId.get(userId);
+            if (stored == null) {
+                return userOrders;
+            }
+            NavigableMap<OrderCursor, Order> newestFirst = after != null
+                    ? stored.headMap(after, false).descendingMap() : stored.descendingMap();
+            for (Order order : newestFirst.values()) {
+                if (userOrders.size() >= limit) {
+                    break;
+                }
+                userOrders.add(copy(order));
+            }
+            return userOrders;
+        }
+
+        @Override
+        public void insertAll(List<Order> orders) {
+            for (Order order : orders) {
+                Order stored = copy(order);
+                ordersById.put(stored.getOrderId(), stored);
+                ordersByUserId.computeIfAbsent(stored.getUserId(), id -> new ConcurrentSkipListMap<>())
+                        .put(OrderCursor.of(stored), stored);
+            }
+        }
+
+        @Override
+        public synchronized List<Order> upsertAll(List<Order> orders) {
+            List<Order> inserted = new ArrayList<>();
+            for (Order order : orders) {
+                if (!ordersById.containsKey(order.getOrderId())) {
+                    insertAll(List.of(order));
+                    inserted.add(order);
+                }
+            }
+            return inserted;
+        }
+
+        List<Order> findAll() {
+            List<Order> all = new ArrayList<>();
+            for (Order order : ordersById.values()) {
+                all.add(copy(order));
+            }
+            return all;
+        }
+
+        private static Order copy(Order order) {
+            return new Order(order.getOrderId(), order.getUserId(), order.getProductId(), order.getQuantity(),
+                    order.getOrderDate(), order.getStatus(), order.getProductPrice());
+        }
+    }
+
+    // ----------------------------
+    // Order Outbox
+    // ----------------------------
+
+    /**
+     * Pending orders in a lock-free queue, oldest first, plus a map by order ID for lookups.
+     * An order removed from the map is dropped from the queue once it reaches the head; the
+     * relay removes the oldest orders, so that is straight away in practice.
+     */
+    private static class MemoryOrderOutbox implements OrderOutbox {
+        private final MemoryProductRepository products;
+        private final ConcurrentLinkedQueue<Order> queue = new ConcurrentLinkedQueue<>();
+        private final Map<String, Order> pending = new ConcurrentHashMap<>();
+
+        MemoryOrderOutbox(MemoryProductRepository products) {
+            this.products = products;
+        }
+
+        @Override
+        public boolean[] placeOrders(List<OrderLine> lines, int[] stockToKeep, List<Order> orders) {
+            boolean[] decremented = products.decrementStock(lines, stockToKeep);
+            for (int i = 0; i < lines.size(); i++) {
+                if (decremented[i]) {
+                    Order order = orders.get(i);
+                    pending.put(order.getOrderId(), order);
+                    queue.add(order);
+                }
+            }
+            return decremented;
+        }
+
+        @Override
+        public Order findById(String orderId) {
+            return pending.get(orderId);
+        }
+
+        @Override
+        public List<Order> peek(int limit) {
+            List<Order> oldest = new ArrayList<>();
+            for (Order order : queue) {
+                if (oldest.size() >= limit) {
+                    break;
+                }
+                if (pending.containsKey(order.getOrderId())) {
+                    oldest.add(order);
+                }
+            }
+            return oldest;
+        }
+
+        @Override
+        public void remove(List<Order> orders) {
+            for (Order order : orders) {
+                pending.remove(order.getOrderId());
+            }
+            Order head;
+            while ((head = queue.peek()) != null && !pending.containsKey(head.getOrderId())) {
+                queue.remove(head);
+            }
+        }
+    }
+
+    // ----------------------------
+    // Refill Orders
+    // ----------------------------
+
+    private static class MemoryRefillOrderRepository implements RefillOrderRepository {
+        private final ConcurrentLinkedQueue<Order> refillOrders = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void create(int productId, int quantity) {
+            refillOrders.add(new Order(null, 0, productId, quantity, new Date(), "Pending", 0.0));
+        }
+
+        @Override
+        public synchronized int createAll(List<OrderLine> refills) {
+            // Like the MongoDB backend's unique index, at most one pending refill per product
+            Set<Integer> pending = new HashSet<>();
+            for (OrderLine refill : refills) {
+                pending.add(refill.getProductId());
+            }
+            pending = findPendingProductIds(pending);
+            Date orderDate = new Date();
+            int created = 0;
+            for (OrderLine refill : refills) {
+                if (pending.add(refill.getProductId())) {
+                    refillOrders.add(new Order(null, 0, refill.getProductId(), refill.getQuantity(), orderDate, "Pending", 0.0));
+                    created++;
+                }
+            }
+            return created;
+        }
+
+        @Override
+        public Set<Integer> findPendingProductIds(Collection<Integer> productIds) {
+            Set<Integer> pending = new HashSet<>();
+            for (Order refill : refillOrders) {
+                if ("Pending".equals(refill.getStatus()) && productIds.contains(refill.getProductId())) {
+                    pending.add(refill.getProductId());
+                }
+            }
+            return pending;
+        }
+    }
+
+    // ----------------------------
+    // Sales
+    // ----------------------------
+
+    private static class MemorySalesRepository implements SalesRepository {
+        private final MemoryOrderRepository orders;
+        // bucket start -> product ID -> totals
+        private final NavigableMap<Long, Map<Integer, Totals>> daily = new ConcurrentSkipListMap<>();
+        private final NavigableMap<Long, Map<Integer, Totals>> hourly = new ConcurrentSkipListMap<>();
+        private volatile boolean backfilled = false;
+
+        MemorySalesRepository(MemoryOrderRepository orders) {
+            this.orders = orders;
+        }
+
+        @Override
+        public void record(List<Order> placed) {
+            for (Order order : placed) {
+                add(daily, order, Calendar.DAY_OF_MONTH);
+                add(hourly, order, Calendar.HOUR_OF_DAY);
+            }
+        }
+
+        @Override
+        public List<SalesData> dailyTotals(Date firstDay, Date lastDay) {
+            return totals(daily, firstDay, lastDay, Calendar.DAY_OF_MONTH);
+        }
+
+        @Override
+        public List<SalesData> hourlyTotals(Date firstHour, Date lastHour) {
+            return totals(hourly, firstHour, lastHour, Calendar.HOUR_OF_DAY);
+        }
+
+        @Override
+        public boolean isBackfilled() {
+            return backfilled;
+        }
+
+        @Override
+        public synchronized long rebuild() {
+            List<Order> all = orders.findAll();
+            daily.clear();
+            hourly.clear();
+            record(all);
+            backfilled = true;
+            return all.size();
+        }
+
+        private static void add(NavigableMap<Long, Map<Integer, Totals>> buckets, Order order, int granularity) {
+            long bucket = SalesRollup.truncate(order.getOrderDate(), granularity).getTime();
+            Totals totals = buckets.computeIfAbsent(bucket, b -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(order.getProductId(), id -> new Totals());
+            totals.add(order.getQuantity(), order.getQuantity() * order.getProductPrice());
+        }
+
+        private static List<SalesData> totals(NavigableMap<Long, Map<Integer, Totals>> buckets,
+                                              Date first, Date last, int granularity) {
+            long from = SalesRollup.truncate(first, granularity).getTime();
+            long to = SalesRollup.truncate(last, granularity).getTime();
+            Map<Integer, Totals> sums = new HashMap<>();
+            if (from <= to) {
+                for (Map<Integer, Totals> bucket : buckets.subMap(from, true, to, true).values()) {
+                    for (Map.Entry<Integer, Totals> entry : bucket.entrySet()) {
+                        sums.computeIfAbsent(entry.getKey(), id -> new Totals()).add(entry.getValue());
+                    }
+                }
+            }
+            List<SalesData> results = new ArrayList<>();
+            for (Map.Entry<Integer, Totals> entry : sums.entrySet()) {
+                results.add(new SalesData(entry.getKey(), null, entry.getValue().quantity, entry.getValue().revenue));
+            }
+            return results;
+        }
+    }
+
+    private static class Totals {
+        private int quantity;
+        private double revenue;
+
+        synchronized void add(int quantity, double revenue) {
+            this.quantity += quantity;
+            this.revenue += revenue;
+        }
+
+        void add(Totals other) {
+            synchronized (other) {
+                add(other.quantity, other.revenue);
+            }
+        }
+    }
+}
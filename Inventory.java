@@ -0,0 +1,237 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stock changes for products.
+ *
+ * In MySQL, a decrement is a single conditional UPDATE ("stock = stock - q WHERE stock >= q"),
+ * so the check and the write cannot be separated by a concurrent order and no read is needed
+ * beforehand. In-process copies of stock (the product catalog, or products held purely in
+ * memory) are changed under a per-product lock taken from a fixed set of stripes, so orders
+ * for different products rarely contend while orders for the same product never lose updates.
+ */
+public class Inventory {
+    private static final String DECREMENT_QUERY =
+            "UPDATE products SET stock = stock - ? WHERE product_id = ? AND stock >= ?";
+    private static final String INCREMENT_QUERY =
+            "UPDATE products SET stock = stock + ? WHERE product_id = ?";
+
+    private final ProductCatalog catalog;
+    private final ReentrantLock[] stripes;
+
+    /**
+     * @param catalog     the catalog whose stock copies are kept in step, or null
+     * @param stripeCount the number of lock stripes (rounded up to a power of two)
+     */
+    public Inventory(ProductCatalog catalog, int stripeCount) {
+        this.catalog = catalog;
+        int n = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the lock guarding in-process stock for a product.
+     *
+     * @param productId the product ID
+     * @return the stripe lock for the product
+     */
+    public ReentrantLock lockFor(int productId) {
+        int h = productId * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    // ----------------------------
+    // MySQL
+    // ----------------------------
+
+    /**
+     * Decrements stock in MySQL if, and only if, enough is available.
+     *
+     * On an auto-commit connection the catalog is updated straight away; inside a transaction
+     * the caller must call {@link #applyCommitted(int, int)} once the transaction commits.
+     *
+     * @param conn      the connection to use (may be part of a larger transaction)
+     * @param productId the product ID
+     * @param quantity  the quantity to take
+     * @return true if the stock was decremented, false if the product is missing or short
+     * @throws SQLException if the update fails
+     */
+    public boolean tryDecrement(Connection conn, int productId, int quantity) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(DECREMENT_QUERY)) {
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, productId);
+            stmt.setInt(3, quantity);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        if (conn.getAutoCommit()) {
+            applyCommitted(productId, -quantity);
+        }
+        return true;
+    }
+
+    /**
+     * Gives stock back in MySQL, e.g. when an order could not be recorded. The change is
+     * relative, so it never overwrites decrements made by other orders in the meantime.
+     * Catalog handling follows {@link #tryDecrement(Connection, int, int)}.
+     *
+     * @param conn      the connection to use
+     * @param productId the product ID
+     * @param quantity  the quantity to return
+     * @return true if the product exists and was updated
+     * @throws SQLException if the update fails
+     */
+    public boolean increment(Connection conn, int productId, int quantity) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(INCREMENT_QUERY)) {
+            stmt.setInt(1, quantity);
+            stmt.setInt(2, productId);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        if (conn.getAutoCommit()) {
+            applyCommitted(productId, quantity);
+        }
+        return true;
+    }
+
+    /**
+     * Conditionally decrements stock for every line in one JDBC batch. Each line succeeds or
+     * fails on its own; lines for the same product are applied in order.
+     * Catalog handling follows {@link #tryDecrement(Connection, int, int)}.
+     *
+     * @param conn        the connection to use (normally inside a transaction)
+     * @param lines       the product/quantity lines
+     * @param stockToKeep for each line, the stock that must remain after it, e.g. for reservations
+     * @return for each line, true if its stock was decremented
+     * @throws SQLException if the batch fails
+     */
+    public boolean[] tryDecrementAll(Connection conn, List<OrderLine> lines, int[] stockToKeep) throws SQLException {
+        boolean[] decremented = new boolean[lines.size()];
+        try (PreparedStatement stmt = conn.prepareStatement(DECREMENT_QUERY)) {
+            for (int i = 0; i < lines.size(); i++) {
+                OrderLine line = lines.get(i);
+                stmt.setInt(1, line.getQuantity());
+                stmt.setInt(2, line.getProductId());
+                stmt.setInt(3, line.getQuantity() + stockToKeep[i]);
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                decremented[i] = counts[i] > 0;
+            }
+        }
+        if (conn.getAutoCommit()) {
+            applyCommitted(lines, decremented, -1);
+        }
+        return decremented;
+    }
+
+    /**
+     * Gives back stock for the selected lines in one JDBC batch.
+     * Catalog handling follows {@link #tryDecrement(Connection, int, int)}.
+     *
+     * @param conn     the connection to use
+     * @param lines    the product/quantity lines
+     * @param selected which lines to give back
+     * @throws SQLException if the batch fails
+     */
+    public void incrementAll(Connection conn, List<OrderLine> lines, boolean[] selected) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(INCREMENT_QUERY)) {
+            for (int i = 0; i < lines.size(); i++) {
+                if (selected[i]) {
+                    stmt.setInt(1, lines.get(i).getQuantity());
+                    stmt.setInt(2, lines.get(i).getProductId());
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        if (conn.getAutoCommit()) {
+            applyCommitted(lines, selected, 1);
+        }
+    }
+
+    // ----------------------------
+    // In-process
+    // ----------------------------
+
+    /**
+     * Decrements the stock of a product held in memory if enough is available.
+     *
+     * @param product     the product whose stock is authoritative in this process
+     * @param quantity    the quantity to take
+     * @param stockToKeep the stock that must remain afterwards, e.g. for reservations
+     * @return true if the stock was decremented
+     */
+    public boolean tryDecrement(Product product, int quantity, int stockToKeep) {
+        ReentrantLock lock = lockFor(product.getProductId());
+        lock.lock();
+        try {
+            if (product.getStock() < quantity + stockToKeep) {
+                return false;
+            }
+            product.setStock(product.getStock() - quantity);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds stock to a product held in memory.
+     *
+     * @param product  the product whose stock is authoritative in this process
+     * @param quantity the quantity to add
+     */
+    public void increment(Product product, int quantity) {
+        ReentrantLock lock = lockFor(product.getProductId());
+        lock.lock();
+        try {
+            product.setStock(product.getStock() + quantity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mirrors a committed MySQL stock change into the catalog.
+     *
+     * @param productId the product ID
+     * @param delta     the committed change in stock
+     */
+    public void applyCommitted(int productId, int delta) {
+        if (catalog == null) {
+            return;
+        }
+        ReentrantLock lock = lockFor(productId);
+        lock.lock();
+        try {
+            catalog.adjustStock(productId, delta);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mirrors committed batch stock changes into the catalog.
+     *
+     * @param lines    the product/quantity lines
+     * @param selected which lines were changed
+     * @param sign     -1 for decrements, 1 for increments
+     */
+    public void applyCommitted(List<OrderLine> lines, boolean[] selected, int sign) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (selected[i]) {
+                applyCommitted(lines.get(i).getProductId(), sign * lines.get(i).getQuantity());
+            }
+        }
+    }
+}
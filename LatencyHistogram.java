@@ -0,0 +1,122 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, laid out like HdrHistogram: values below
+ * {@value #SUB_BUCKETS} ns get a bucket each, and above that every power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets. Any recorded value is therefore known to within 1/64
+ * (about 1.6%) of itself, from nanoseconds up to the largest trackable value (about 4.6
+ * minutes; longer durations are counted as that).
+ *
+ * Recording is a bucket index computed with a leading-zero count plus two atomic increments,
+ * with no allocation and no lock, so it can sit on every call. Percentiles are computed when
+ * read by walking the buckets; reads taken while other threads record are approximate, which
+ * is fine for monitoring.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Largest power of two tracked: values up to 2^38 - 1 ns (about 275 seconds)
+    private static final int MAX_EXPONENT = 37;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0L), MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * @return the sum of all recorded durations, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns the duration at or below which the given fraction of recorded durations fall.
+     *
+     * @param quantile the fraction, e.g. 0.99 for the 99th percentile
+     * @return the duration in nanoseconds (the top of its bucket), or 0 if nothing was recorded
+     */
+    public long valueAtQuantile(double quantile) {
+        return valuesAtQuantiles(quantile)[0];
+    }
+
+    /**
+     * Returns the durations for several quantiles from one pass over the buckets.
+     *
+     * @param quantiles the fractions, in ascending order
+     * @return the duration in nanoseconds for each quantile, 0 if nothing was recorded
+     */
+    public long[] valuesAtQuantiles(double... quantiles) {
+        long[] values = new long[quantiles.length];
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return values;
+        }
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT && next < quantiles.length; i++) {
+            seen += snapshot[i];
+            while (next < quantiles.length && seen >= Math.max(1, (long) Math.ceil(quantiles[next] * total))) {
+                values[next++] = highestValueIn(i);
+            }
+        }
+        while (next < quantiles.length) {
+            values[next++] = highestValueIn(BUCKET_COUNT - 1);
+        }
+        return values;
+    }
+
+    /**
+     * The bucket of a value: values below SUB_BUCKETS map to themselves; above, the exponent of
+     * the leading bit picks a group of SUB_BUCKETS buckets and the next SUB_BUCKET_BITS bits the
+     * bucket within it.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * The largest value that maps to a bucket.
+     */
+    static long highestValueIn(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        long lowest = ((long) (SUB_BUCKETS | subBucket)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
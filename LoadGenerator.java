@@ -0,0 +1,495 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives RetailStoreServer with a mix of /search, /products/{id}, /orders/{id} and /users/{name}
+ * requests and prints throughput and latency percentiles per endpoint.
+ *
+ * Two ways of generating load:
+ * - closed (default): -Dload.concurrency workers, each sending one request at a time. With
+ *   -Dload.rate each worker paces itself to its share of that rate; without it, workers send as
+ *   fast as responses come back, pausing for an exponentially distributed think time with mean
+ *   -Dload.thinkMs between requests.
+ * - open: requests are started at a fixed -Dload.rate per second whether or not earlier ones
+ *   have finished, like independent users arriving.
+ *
+ * Whenever a rate is set, latency is measured from the time the request was scheduled to be
+ * sent, not from when it actually was. A server stall therefore shows up in full in every
+ * request it delayed, instead of as one slow sample (coordinated omission). Both that response
+ * time and the service time (from the actual send) are reported. A closed loop without a rate
+ * has no schedule to measure against, so it reports service time only.
+ *
+ * Settings (all system properties):
+ * - load.url (http://localhost:8000), load.mode (closed|open), load.concurrency (16),
+ *   load.rate (requests/second, 0 = unpaced), load.thinkMs (0), load.durationSec (30),
+ *   load.warmupSec (5, not reported), load.timeoutMs (10000), load.maxOutstanding (10000, open
+ *   loop only)
+ * - load.mix: relative weights, e.g. search=40,product=40,order=10,user=10
+ * - load.searchTerms, load.searchLimit (50), load.productIds (highest id, 1000), load.users and
+ *   load.orderIds (comma-separated lists)
+ * - load.startServer=true starts the server in this JVM first, on the memory backend unless
+ *   -Dstore.backend says otherwise, and places -Dload.seedOrders orders (100) so that
+ *   /orders/{id} finds something.
+ *
+ * Run it with e.g.
+ * java -cp "target/classes:..." -Dload.startServer=true -Dload.rate=2000 LoadGenerator
+ */
+public class LoadGenerator {
+    // ----------------------------
+    // Settings
+    // ----------------------------
+    private static final String BASE_URL = System.getProperty("load.url", "http://localhost:8000");
+    private static final String MODE = System.getProperty("load.mode", "closed").toLowerCase(Locale.ROOT);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "0"));
+    private static final long THINK_MS = Long.getLong("load.thinkMs", 0L);
+    private static final int DURATION_SEC = Integer.getInteger("load.durationSec", 30);
+    private static final int WARMUP_SEC = Integer.getInteger("load.warmupSec", 5);
+    private static final long TIMEOUT_MS = Long.getLong("load.timeoutMs", 10000L);
+    private static final int MAX_OUTSTANDING = Integer.getInteger("load.maxOutstanding", 10000);
+    private static final String MIX = System.getProperty("load.mix", "search=40,product=40,order=10,user=10");
+    private static final String[] SEARCH_TERMS = System.getProperty("load.searchTerms",
+            "Apples,Bananas,Bread,Cheese,Coffee,Juice,Pasta,Rice,Soap,Tea,Tomatoes,Yogurt,Fresh 1,Spicy").split(",");
+    private static final int SEARCH_LIMIT = Integer.getInteger("load.searchLimit", 50);
+    private static final int PRODUCT_IDS = Integer.getInteger("load.productIds", 1000);
+    private static final String[] USERS = System.getProperty("load.users", "customer,manager,cashier,nobody").split(",");
+    private static final int SEED_ORDERS = Integer.getInteger("load.seedOrders", 100);
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    private static String[] orderIds = System.getProperty("load.orderIds", "ORD-0").split(",");
+
+    private static final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(TIMEOUT_MS))
+            .build();
+
+    // Swapped for a fresh one when the warm-up ends
+    private static volatile Results results;
+
+    public static void main(String[] args) throws Exception {
+        if (Boolean.getBoolean("load.startServer")) {
+            startServer();
+        }
+        if (!MODE.equals("closed") && !MODE.equals("open")) {
+            throw new IllegalArgumentException("Unknown load.mode: " + MODE + " (expected closed or open)");
+        }
+        if (MODE.equals("open") && RATE <= 0) {
+            throw new IllegalArgumentException("load.mode=open needs load.rate");
+        }
+
+        Endpoint[] mix = parseMix(MIX);
+        results = new Results();
+        System.out.println(describe());
+
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(WARMUP_SEC + DURATION_SEC);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "load-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicLong measureStart = new AtomicLong(startNanos);
+        if (WARMUP_SEC > 0) {
+            timer.schedule(() -> {
+                results = new Results();
+                measureStart.set(System.nanoTime());
+                System.out.println("Warm-up done; measuring for " + DURATION_SEC + " s.");
+            }, WARMUP_SEC, TimeUnit.SECONDS);
+        }
+        Object[] last = {null, 0L}; // Results and request count at the previous progress line
+        timer.scheduleAtFixedRate(() -> {
+            Results current = results;
+            long count = current.total.count();
+            long delta = count - (current == last[0] ? (Long) last[1] : 0L);
+            last[0] = current;
+            last[1] = count;
+            System.out.printf(Locale.ROOT, "  %5d s: %8.0f req/s, %d errors%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos), delta / 5.0,
+                    current.total.errors.sum());
+        }, 5, 5, TimeUnit.SECONDS);
+
+        if (MODE.equals("open")) {
+            runOpenLoop(mix, endNanos);
+        } else {
+            runClosedLoop(mix, endNanos);
+        }
+        timer.shutdownNow();
+
+        report(results, (System.nanoTime() - measureStart.get()) / 1e9);
+        System.exit(0);
+    }
+
+    // ----------------------------
+    // Load Generation
+    // ----------------------------
+
+    /**
+     * Starts requests at fixed intervals from one scheduling thread, without waiting for earlier
+     * ones to finish. Requests beyond load.maxOutstanding are not sent and are reported apart.
+     */
+    private static void runOpenLoop(Endpoint[] mix, long endNanos) throws InterruptedException {
+        long interval = (long) (1e9 / RATE);
+        Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
+        long intended = System.nanoTime();
+        while (intended < endNanos && System.nanoTime() < endNanos) {
+            sleepUntil(intended);
+            long scheduledAt = intended;
+            intended += interval;
+            Endpoint endpoint = pick(mix);
+            if (!outstanding.tryAcquire()) {
+                results.stats(endpoint).overflow.increment();
+                results.total.overflow.increment();
+                continue;
+            }
+            long sentAt = System.nanoTime();
+            client.sendAsync(endpoint.request(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        record(endpoint, scheduledAt, sentAt, response, error);
+                        outstanding.release();
+                    });
+        }
+        // Let the requests still in flight finish so they are counted
+        outstanding.tryAcquire(MAX_OUTSTANDING, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs load.concurrency workers that each send one request at a time.
+     */
+    private static void runClosedLoop(Endpoint[] mix, long endNanos) throws InterruptedException {
+        // With a rate, each worker sends its share on a fixed schedule, offset from the others
+        long interval = RATE > 0 ? (long) (1e9 * CONCURRENCY / RATE) : 0;
+        long startNanos = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            long firstSend = startNanos + interval * i / CONCURRENCY;
+            Thread worker = new Thread(() -> runWorker(mix, interval, firstSend, endNanos), "load-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private static void runWorker(Endpoint[] mix, long interval, long firstSend, long endNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long intended = firstSend;
+        // Stop at the end time even if the server is too slow for the schedule to keep up
+        while (intended < endNanos && System.nanoTime() < endNanos) {
+            if (interval > 0) {
+                sleepUntil(intended);
+            }
+            long sentAt = System.nanoTime();
+            if (interval == 0) {
+                intended = sentAt;
+            }
+            Endpoint endpoint = pick(mix);
+            HttpResponse<Void> response = null;
+            Throwable error = null;
+            try {
+                response = client.send(endpoint.request(), HttpResponse.BodyHandlers.discarding());
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            record(endpoint, intended, sentAt, response, error);
+
+            if (interval > 0) {
+                intended += interval;
+            } else {
+                if (THINK_MS > 0) {
+                    long thinkNanos = (long) (-Math.log(1.0 - random.nextDouble()) * THINK_MS * 1_000_000);
+                    LockSupport.parkNanos(thinkNanos);
+                }
+                intended = System.nanoTime();
+            }
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static Endpoint pick(Endpoint[] mix) {
+        return mix[ThreadLocalRandom.current().nextInt(mix.length)];
+    }
+
+    private static void record(Endpoint endpoint, long scheduledAt, long sentAt, HttpResponse<?> response,
+                               Throwable error) {
+        long now = System.nanoTime();
+        int status = response != null ? response.statusCode() : 0;
+        Results current = results;
+        current.stats(endpoint).record(now - scheduledAt, now - sentAt, status, error);
+        current.total.record(now - scheduledAt, now - sentAt, status, error);
+    }
+
+    // ----------------------------
+    // Requests
+    // ----------------------------
+
+    private enum Endpoint {
+        SEARCH("search") {
+            @Override
+            String path(ThreadLocalRandom random) {
+                String term = SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)];
+                return "/search?name=" + URLEncoder.encode(term, StandardCharsets.UTF_8) + "&limit=" + SEARCH_LIMIT;
+            }
+        },
+        PRODUCT("product") {
+            @Override
+            String path(ThreadLocalRandom random) {
+                return "/products/" + (1 + random.nextInt(PRODUCT_IDS));
+            }
+        },
+        ORDER("order") {
+            @Override
+            String path(ThreadLocalRandom random) {
+                String[] ids = orderIds;
+                return "/orders/" + ids[random.nextInt(ids.length)];
+            }
+        },
+        USER("user") {
+            @Override
+            String path(ThreadLocalRandom random) {
+                return "/users/" + USERS[random.nextInt(USERS.length)];
+            }
+        };
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+
+        abstract String path(ThreadLocalRandom random);
+
+        HttpRequest request() {
+            return HttpRequest.newBuilder(URI.create(BASE_URL + path(ThreadLocalRandom.current())))
+                    .timeout(Duration.ofMillis(TIMEOUT_MS))
+                    .header("Accept-Encoding", "gzip")
+                    .GET()
+                    .build();
+        }
+
+        static Endpoint byLabel(String label) {
+            for (Endpoint endpoint : values()) {
+                if (endpoint.label.equals(label)) {
+                    return endpoint;
+                }
+            }
+            throw new IllegalArgumentException("Unknown endpoint in load.mix: " + label
+                    + " (expected search, product, order or user)");
+        }
+    }
+
+    /**
+     * Turns "search=40,product=60" into a 100-slot table, so picking an endpoint is one random
+     * index.
+     */
+    static Endpoint[] parseMix(String mix) {
+        List<Endpoint> table = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid load.mix entry: " + part);
+            }
+            Endpoint endpoint = Endpoint.byLabel(pair[0].trim());
+            int weight = Integer.parseInt(pair[1].trim());
+            for (int i = 0; i < weight; i++) {
+                table.add(endpoint);
+            }
+        }
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("load.mix has no weight");
+        }
+        return table.toArray(new Endpoint[0]);
+    }
+
+    // ----------------------------
+    // Results
+    // ----------------------------
+
+    private static class Stats {
+        // From the scheduled send time; equal to the service time when there is no schedule
+        final LatencyHistogram responseTime = new LatencyHistogram();
+        // From the actual send time
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final LongAdder overflow = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder[] statusClasses = new LongAdder[6];
+
+        Stats() {
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] = new LongAdder();
+            }
+        }
+
+        void record(long responseNanos, long serviceNanos, int status, Throwable error) {
+            responseTime.record(responseNanos);
+            serviceTime.record(serviceNanos);
+            if (error != null) {
+                errors.increment();
+                if (error instanceof HttpTimeoutException || error.getCause() instanceof HttpTimeoutException) {
+                    timeouts.increment();
+                }
+            } else {
+                statusClasses[Math.min(status / 100, 5)].increment();
+                if (status >= 500) {
+                    errors.increment();
+                }
+            }
+        }
+
+        long count() {
+            return responseTime.getCount();
+        }
+    }
+
+    private static class Results {
+        final Stats[] byEndpoint = new Stats[Endpoint.values().length];
+        final Stats total = new Stats();
+
+        Results() {
+            for (int i = 0; i < byEndpoint.length; i++) {
+                byEndpoint[i] = new Stats();
+            }
+        }
+
+        Stats stats(Endpoint endpoint) {
+            return byEndpoint[endpoint.ordinal()];
+        }
+    }
+
+    private static String describe() {
+        StringBuilder text = new StringBuilder("Load test against " + BASE_URL + ": ");
+        if (MODE.equals("open")) {
+            text.append("open loop at ").append(formatRate(RATE)).append(" req/s");
+        } else {
+            text.append("closed loop, ").append(CONCURRENCY).append(" workers, ");
+            text.append(RATE > 0 ? "paced to " + formatRate(RATE) + " req/s"
+                    : "unpaced" + (THINK_MS > 0 ? ", think time " + THINK_MS + " ms" : ""));
+        }
+        text.append("; ").append(WARMUP_SEC).append(" s warm-up + ").append(DURATION_SEC).append(" s; mix ")
+                .append(MIX);
+        return text.toString();
+    }
+
+    private static void report(Results results, double seconds) {
+        boolean scheduled = RATE > 0;
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-8s %9s %9s %7s %7s %7s %7s %7s %7s%n",
+                "endpoint", "requests", "req/s", "errors", "timeout", "2xx", "3xx", "4xx", "5xx");
+        for (Endpoint endpoint : Endpoint.values()) {
+            printCounts(endpoint.label, results.stats(endpoint), seconds);
+        }
+        printCounts("total", results.total, seconds);
+        if (results.total.overflow.sum() > 0) {
+            System.out.println("Not sent (load.maxOutstanding reached): " + results.total.overflow.sum());
+        }
+
+        System.out.println();
+        System.out.println(scheduled ? "Response time, ms (from scheduled send; corrected for coordinated omission):"
+                : "Service time, ms (closed loop without load.rate; not corrected for coordinated omission):");
+        printLatencyTable(results, true);
+        if (scheduled) {
+            System.out.println();
+            System.out.println("Service time, ms (from actual send):");
+            printLatencyTable(results, false);
+        }
+    }
+
+    private static void printCounts(String label, Stats stats, double seconds) {
+        System.out.printf(Locale.ROOT, "%-8s %9d %9.1f %7d %7d %7d %7d %7d %7d%n", label, stats.count(),
+                stats.count() / seconds, stats.errors.sum(), stats.timeouts.sum(), stats.statusClasses[2].sum(),
+                stats.statusClasses[3].sum(), stats.statusClasses[4].sum(), stats.statusClasses[5].sum());
+    }
+
+    private static void printLatencyTable(Results results, boolean responseTime) {
+        System.out.printf(Locale.ROOT, "%-8s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "mean", "p50", "p90", "p99", "p99.9", "max");
+        for (Endpoint endpoint : Endpoint.values()) {
+            printLatencies(endpoint.label, results.stats(endpoint), responseTime);
+        }
+        printLatencies("total", results.total, responseTime);
+    }
+
+    private static void printLatencies(String label, Stats stats, boolean responseTime) {
+        LatencyHistogram histogram = responseTime ? stats.responseTime : stats.serviceTime;
+        long count = histogram.getCount();
+        if (count == 0) {
+            return;
+        }
+        long[] values = histogram.valuesAtQuantiles(PERCENTILES);
+        System.out.printf(Locale.ROOT, "%-8s %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", label,
+                histogram.getTotalNanos() / 1e6 / count, values[0] / 1e6, values[1] / 1e6, values[2] / 1e6,
+                values[3] / 1e6, values[4] / 1e6);
+    }
+
+    private static String formatRate(double rate) {
+        return rate == Math.rint(rate) ? Long.toString((long) rate) : Double.toString(rate);
+    }
+
+    // ----------------------------
+    // In-Process Server
+    // ----------------------------
+
+    /**
+     * Starts RetailStoreServer in this JVM and, on the memory backend, places sample orders for
+     * the "customer" user so /orders/{id} requests find them.
+     */
+    private static void startServer() {
+        if (System.getProperty("store.backend") == null) {
+            System.setProperty("store.backend", "memory");
+        }
+        RetailStoreServer.main(new String[0]);
+        if (!DataStore.getBackendName().equals("memory") || SEED_ORDERS <= 0 || System.getProperty("load.orderIds") != null) {
+            return;
+        }
+        User customer = DataStore.findUserByUsername("customer");
+        if (customer == null) {
+            return;
+        }
+        List<OrderLine> lines = new ArrayList<>();
+        for (int i = 0; i < SEED_ORDERS; i++) {
+            lines.add(new OrderLine(1 + i % PRODUCT_IDS, 1));
+        }
+        List<String> placed = new ArrayList<>();
+        for (OrderLineResult result : DataStore.placeCartOrder(customer.getUserId(), lines)) {
+            if (result.isPlaced()) {
+                placed.add(result.getOrderId());
+            }
+        }
+        if (!placed.isEmpty()) {
+            orderIds = placed.toArray(new String[0]);
+        }
+        System.out.println("Placed " + placed.size() + " sample orders: " + Arrays.asList(orderIds).subList(0,
+                Math.min(3, orderIds.length)) + "...");
+    }
+}
@@ -0,0 +1,402 @@
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured logging.
+ *
+ * A call captures the time, level, thread name, message and key/value fields into an entry and
+ * hands it to a bounded lock-free ring buffer; one background thread formats the entries and
+ * writes them to standard output. The calling thread never formats, never takes the console
+ * lock and never waits: when the buffer is full the entry is dropped and counted, and the
+ * writer reports the count on its next line. Lines are plain text with logfmt fields:
+ *
+ * <pre>
+ * 2026-01-31T12:00:00.123Z ERROR [http-worker-3] Error finding product by ID. productId=42 error="..."
+ * </pre>
+ *
+ * followed by the stack trace when one was passed. Warnings and errors are rate limited per
+ * message (-Dlog.maxPerSecond, default 10), so a failing database cannot turn every request
+ * into a stack trace; the suppressed count is reported on the next line that gets through.
+ * Keep messages constant and put the variable parts in fields, since the message is the key.
+ *
+ * The level is set with -Dlog.level (DEBUG, INFO, WARN or ERROR; INFO by default) and the
+ * buffer size with -Dlog.bufferSize (default 8192 entries). Field values are turned into text
+ * on the writer thread, so pass values that do not change afterwards (ids, numbers, strings).
+ */
+public final class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final Level LEVEL = Level.valueOf(System.getProperty("log.level", "INFO").toUpperCase());
+    private static final int MAX_PER_SECOND = Integer.getInteger("log.maxPerSecond", 10);
+    // How long the writer sleeps when the buffer is empty; errors and bursts wake it at once
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final RingBuffer buffer = new RingBuffer(Integer.getInteger("log.bufferSize", 8192));
+    private static final Map<String, RateLimit> rateLimits = new ConcurrentHashMap<>();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong droppedReported = new AtomicLong();
+    private static final PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 16384));
+
+    private static volatile boolean closed = false;
+    private static final Thread writer = new Thread(Log::runWriter, "log-writer");
+
+    static {
+        writer.setDaemon(true);
+        writer.start();
+        // Write out what is still buffered when the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::close, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    // ----------------------------
+    // Logging
+    // ----------------------------
+
+    /**
+     * @param level the level to check
+     * @return true if messages at the level are written; use it to skip building costly fields
+     */
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(LEVEL) >= 0;
+    }
+
+    /**
+     * Logs a detail that is only of interest when tracking a problem down.
+     *
+     * @param message what happened
+     * @param fields  alternating field names and values
+     */
+    public static void debug(String message, Object... fields) {
+        log(Level.DEBUG, message, null, fields);
+    }
+
+    /**
+     * Logs a normal event, e.g. startup and shutdown steps.
+     *
+     * @param message what happened
+     * @param fields  alternating field names and values
+     */
+    public static void info(String message, Object... fields) {
+        log(Level.INFO, message, null, fields);
+    }
+
+    /**
+     * Logs something unexpected that the application recovered from. Rate limited.
+     *
+     * @param message what happened
+     * @param fields  alternating field names and values
+     */
+    public static void warn(String message, Object... fields) {
+        log(Level.WARN, message, null, fields);
+    }
+
+    /**
+     * Logs something unexpected that the application recovered from, with its cause. Rate limited.
+     *
+     * @param message what happened
+     * @param error   the cause, written with its stack trace
+     * @param fields  alternating field names and values
+     */
+    public static void warn(String message, Throwable error, Object... fields) {
+        log(Level.WARN, message, error, fields);
+    }
+
+    /**
+     * Logs a failed operation. Rate limited.
+     *
+     * @param message what failed
+     * @param error   the cause, written with its stack trace; may be null
+     * @param fields  alternating field names and values
+     */
+    public static void error(String message, Throwable error, Object... fields) {
+        log(Level.ERROR, message, error, fields);
+    }
+
+    private static void log(Level level, String message, Throwable error, Object[] fields) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long suppressed = 0;
+        if (level.compareTo(Level.WARN) >= 0) {
+            suppressed = admit(message, now);
+            if (suppressed < 0) {
+                return;
+            }
+        }
+        Entry entry = new Entry(now, level, Thread.currentThread().getName(), message, fields, error, suppressed);
+        if (closed) {
+            // The writer is gone (JVM shutdown); write on the caller's thread instead
+            write(entry);
+            flush();
+            return;
+        }
+        long position = buffer.offer(entry);
+        if (position < 0) {
+            dropped.incrementAndGet();
+        } else if (level == Level.ERROR || buffer.isWakePoint(position)) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Applies the per-message rate limit.
+     *
+     * @return -1 if the line is suppressed, else the number of lines suppressed since the last
+     *         one that got through
+     */
+    private static long admit(String message, long now) {
+        RateLimit limit = rateLimits.computeIfAbsent(message, m -> new RateLimit());
+        synchronized (limit) {
+            if (now - limit.windowStart >= 1000) {
+                limit.windowStart = now;
+                limit.count = 0;
+            }
+            if (limit.count >= MAX_PER_SECOND) {
+                limit.suppressed++;
+                return -1;
+            }
+            limit.count++;
+            long suppressed = limit.suppressed;
+            limit.suppressed = 0;
+            return suppressed;
+        }
+    }
+
+    /**
+     * @return the number of entries dropped because the buffer was full
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops the writer thread after it has written everything buffered. Later calls write
+     * directly on the calling thread. Runs from a shutdown hook; calling it again does nothing.
+     */
+    public static void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        flush();
+    }
+
+    // ----------------------------
+    // Writer Thread
+    // ----------------------------
+
+    private static void runWriter() {
+        while (!closed) {
+            if (drain()) {
+                flush();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Writes every buffered entry.
+     *
+     * @return true if anything was written
+     */
+    private static synchronized boolean drain() {
+        boolean wrote = false;
+        Entry entry;
+        while ((entry = buffer.poll()) != null) {
+            write(entry);
+            wrote = true;
+        }
+        long total = dropped.get();
+        long unreported = total - droppedReported.getAndSet(total);
+        if (unreported > 0) {
+            write(new Entry(System.currentTimeMillis(), Level.WARN, Thread.currentThread().getName(),
+                    "Log buffer full; entries dropped.", new Object[]{"dropped", unreported}, null, 0));
+            wrote = true;
+        }
+        return wrote;
+    }
+
+    private static void flush() {
+        synchronized (out) {
+            out.flush();
+        }
+    }
+
+    private static void write(Entry entry) {
+        StringBuilder line = new StringBuilder(128);
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(entry.timeMillis), line);
+        line.append(' ').append(entry.level);
+        if (entry.level == Level.INFO || entry.level == Level.WARN) {
+            line.append(' ');
+        }
+        line.append(" [").append(entry.thread).append("] ").append(entry.message);
+        Object[] fields = entry.fields;
+        for (int i = 0; i < fields.length; i += 2) {
+            line.append(' ').append(fields[i]).append('=');
+            appendValue(line, i + 1 < fields.length ? fields[i + 1] : null);
+        }
+        if (entry.error != null) {
+            line.append(" error=");
+            appendValue(line, entry.error.toString());
+        }
+        if (entry.suppressed > 0) {
+            line.append(" suppressed=").append(entry.suppressed);
+        }
+        synchronized (out) {
+            out.println(line);
+            if (entry.error != null) {
+                entry.error.printStackTrace(out);
+            }
+        }
+    }
+
+    /**
+     * Appends a field value, quoted if it contains spaces, quotes or '='.
+     */
+    private static void appendValue(StringBuilder line, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c == '\n') {
+                line.append("\\n");
+            } else if (c == '\r') {
+                line.append("\\r");
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    // ----------------------------
+    // Ring Buffer
+    // ----------------------------
+
+    /**
+     * A bounded many-producer, single-consumer queue over an array (D. Vyukov's bounded queue).
+     * Each slot has a sequence number: a producer claims a position with one CAS on the tail and
+     * publishes the entry by advancing the slot's sequence; the consumer, the writer thread,
+     * takes entries in order without any CAS. A full buffer fails the offer instead of waiting.
+     */
+    private static final class RingBuffer {
+        private final int mask;
+        private final Entry[] entries;
+        private final AtomicLongArray sequences;
+        private final AtomicLong tail = new AtomicLong();
+        private long head = 0; // Only touched by the consumer
+
+        RingBuffer(int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+            this.mask = capacity - 1;
+            this.entries = new Entry[capacity];
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        /**
+         * @return the position the entry was stored at, or -1 if the buffer is full
+         */
+        long offer(Entry entry) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        entries[index] = entry;
+                        sequences.set(index, position + 1); // Publishes the entry to the consumer
+                        return position;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return -1; // The consumer has not freed this slot yet: full
+                } else {
+                    position = tail.get(); // Another producer took this position
+                }
+            }
+        }
+
+        /**
+         * @return true every quarter of the capacity, so a burst wakes the consumer before the
+         *         buffer fills
+         */
+        boolean isWakePoint(long position) {
+            return (position & (mask >>> 2)) == 0;
+        }
+
+        Entry poll() {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                return null;
+            }
+            Entry entry = entries[index];
+            entries[index] = null;
+            sequences.set(index, head + mask + 1); // Frees the slot for the next lap
+            head++;
+            return entry;
+        }
+    }
+
+    private static final class Entry {
+        final long timeMillis;
+        final Level level;
+        final String thread;
+        final String message;
+        final Object[] fields;
+        final Throwable error;
+        final long suppressed;
+
+        Entry(long timeMillis, Level level, String thread, String message, Object[] fields, Throwable error,
+              long suppressed) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.thread = thread;
+            this.message = message;
+            this.fields = fields;
+            this.error = error;
+            this.suppressed = suppressed;
+        }
+    }
+
+    private static final class RateLimit {
+        long windowStart;
+        int count;
+        long suppressed;
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Places refill orders for products whose stock has fallen to their reorder point.
+ *
+ * DataStore reports every product whose stock it changes (checkouts, product updates); the
+ * monitor only remembers which ones, so reporting costs one set insert and repeated changes to
+ * a hot product coalesce. Every -Drefill.checkMs (default 5000) a check looks up the current
+ * stock of the reported products in one lookup, picks those at or below -Drefill.reorderPoint
+ * (default 10), leaves out any that already have a pending refill order, and orders
+ * -Drefill.reorderQuantity (default 100) of each of the rest with a single insert. Products
+ * nobody changed are never looked at.
+ *
+ * Products from a check that failed are checked again next time. The pending-order lookup
+ * only saves the insert for products already on order; monitors in several processes can
+ * still check the same product at once, and it is the refill store that keeps both from
+ * ordering it (see {@link RefillOrderRepository#createAll}).
+ */
+public class LowStockMonitor {
+    private static final int REORDER_POINT = Integer.getInteger("refill.reorderPoint", 10);
+    private static final int REORDER_QUANTITY = Integer.getInteger("refill.reorderQuantity", 100);
+    private static final long CHECK_INTERVAL_MS = Long.getLong("refill.checkMs", 5000L);
+
+    private final RefillOrderRepository refillOrders;
+    private final ProductLookup productLookup;
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor;
+
+    private final LongAdder refillsCreated = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+
+    /**
+     * Finds the current state of many products at once.
+     */
+    public interface ProductLookup {
+        /**
+         * @param productIds the product IDs
+         * @return map of product ID to Product for the ids that exist
+         * @throws StorageException if any of the products could not be read
+         */
+        Map<Integer, Product> findByIds(Collection<Integer> productIds) throws StorageException;
+    }
+
+    /**
+     * @param refillOrders  where refill orders are created
+     * @param productLookup finds the current state of many products; must throw rather than
+     *                      leave out products it could not read, or they are never rechecked
+     */
+    public LowStockMonitor(RefillOrderRepository refillOrders, ProductLookup productLookup) {
+        this.refillOrders = refillOrders;
+        this.productLookup = productLookup;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "low-stock-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts the periodic checks and exposes the monitor's counters at /metrics.
+     */
+    public void start() {
+        executor.scheduleWithFixedDelay(this::checkQuietly, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        Metrics.counter("refill_orders_auto_created_total", "Refill orders placed by the low-stock monitor.",
+                refillsCreated::sum);
+        Metrics.counter("refill_check_failures_total", "Low-stock checks that failed and will be retried.",
+                failureCount::sum);
+        Metrics.gauge("refill_products_to_check", "Products whose stock changed since the last low-stock check.",
+                changed::size);
+    }
+
+    /**
+     * Stops the checks after a final one, so changes made just before shutdown are not lost.
+     */
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkQuietly();
+    }
+
+    /**
+     * Notes that a product's stock has changed.
+     *
+     * @param productId the product ID
+     */
+    public void stockChanged(int productId) {
+        changed.add(productId);
+    }
+
+    /**
+     * Notes the products of the selected lines as changed.
+     *
+     * @param lines    the product/quantity lines
+     * @param selected which lines changed stock
+     */
+    public void stockChanged(List<OrderLine> lines, boolean[] selected) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (selected[i]) {
+                changed.add(lines.get(i).getProductId());
+            }
+        }
+    }
+
+    private void checkQuietly() {
+        try {
+            check();
+        } catch (StorageException | RuntimeException e) {
+            failureCount.increment();
+            Log.error("Error checking for low stock; will retry.", e);
+        }
+    }
+
+    /**
+     * Orders refills for the reported products that are low on stock.
+     *
+     * @return the number of refill orders created
+     * @throws StorageException if looking up or creating refill orders fails; the products are
+     *                          checked again next time
+     */
+    synchronized int check() throws StorageException {
+        List<Integer> productIds = new ArrayList<>();
+        for (Iterator<Integer> it = changed.iterator(); it.hasNext(); ) {
+            productIds.add(it.next());
+            it.remove();
+        }
+        if (productIds.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<Integer> lowIds = new ArrayList<>();
+            for (Product product : productLookup.findByIds(productIds).values()) {
+                if (product.getStock() <= REORDER_POINT) {
+                    lowIds.add(product.getProductId());
+                }
+            }
+            if (lowIds.isEmpty()) {
+                return 0;
+            }
+            Set<Integer> pending = refillOrders.findPendingProductIds(lowIds);
+            List<OrderLine> refills = new ArrayList<>();
+            for (int productId : lowIds) {
+                if (!pending.contains(productId)) {
+                    refills.add(new OrderLine(productId, REORDER_QUANTITY));
+                }
+            }
+            if (refills.isEmpty()) {
+                return 0;
+            }
+            int created = refillOrders.createAll(refills);
+            refillsCreated.add(created);
+            Log.info("Refill orders created for low stock.", "count", created, "quantity", REORDER_QUANTITY);
+            return created;
+        } catch (StorageException | RuntimeException e) {
+            changed.addAll(productIds);
+            throw e;
+        }
+    }
+}
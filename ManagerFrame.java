@@ -20,6 +20,10 @@ public class ManagerFrame extends JFrame {
     private JButton viewSalesReportButton;
     private JButton refillInventoryButton;
 
+    // Inventory listing, loaded a page at a time
+    private static final int INVENTORY_PAGE_SIZE = 200;
+    private String inventoryCursor; // Next page of the inventory listing, or null after the last
+
     public ManagerFrame(User user) {
         this.user = user;
         setTitle("Retail Store - Manager");
@@ -311,26 +315,18 @@ public class ManagerFrame extends JFrame {
     }
 
     private void handleRefillInventory() {
-        // Step 1: Fetch all products
-        List<Product> products = DataStore.getAllProducts();
-        if (products.isEmpty()) {
+        // Step 1: Fetch the first page of products
+        Page<Product> firstPage = DataStore.getAllProducts(null, INVENTORY_PAGE_SIZE);
+        if (firstPage.getItems().isEmpty()) {
             JOptionPane.showMessageDialog(this, "No products available in the inventory.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
         // Step 2: Display products in a JTable within a scroll pane
         String[] columnNames = {"Product ID", "Name", "Description", "Price", "Current Stock"};
-        DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0);
-        for (Product p : products) {
-            Object[] rowData = {
-                    p.getProductId(),
-                    p.getName(),
-                    p.getDescription(),
-                    String.format("$%.2f", p.getPrice()),
-                    p.getStock()
-            };
-            tableModel.addRow(rowData);
-        }
+        final DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0);
+        addInventoryRows(tableModel, firstPage.getItems());
+        inventoryCursor = firstPage.getNextCursor();
 
         JTable table = new JTable(tableModel);
         table.setEnabled(false); // Make table read-only
@@ -346,6 +342,20 @@ public class ManagerFrame extends JFrame {
         panel.add(titleLabel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
 
+        // Further pages are only loaded if the manager asks for them
+        final JButton loadMoreButton = new JButton("Load More Products");
+        loadMoreButton.setEnabled(inventoryCursor != null);
+        loadMoreButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Page<Product> page = DataStore.getAllProducts(inventoryCursor, INVENTORY_PAGE_SIZE);
+                addInventoryRows(tableModel, page.getItems());
+                inventoryCursor = page.getNextCursor();
+                loadMoreButton.setEnabled(inventoryCursor != null);
+            }
+        });
+        panel.add(loadMoreButton, BorderLayout.SOUTH);
+
         // Step 4: Show the products to the manager
         JOptionPane.showMessageDialog(this, panel, "Inventory", JOptionPane.INFORMATION_MESSAGE);
 
@@ -398,4 +408,17 @@ public class ManagerFrame extends JFrame {
             JOptionPane.showMessageDialog(this, "Failed to create refill order.", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
+
+    private void addInventoryRows(DefaultTableModel tableModel, List<Product> products) {
+        for (Product p : products) {
+            Object[] rowData = {
+                    p.getProductId(),
+                    p.getName(),
+                    p.getDescription(),
+                    String.format("$%.2f", p.getPrice()),
+                    p.getStock()
+            };
+            tableModel.addRow(rowData);
+        }
+    }
 }
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide metrics, written out in the Prometheus text exposition format by /metrics.
+ *
+ * Timed operations (every DataStore method, every HTTP context) are grouped in {@link Family}
+ * objects. Each {@link Timer} keeps a {@link LatencyHistogram}, an error count and an in-flight
+ * gauge, and is exposed as a summary (p50/p90/p99/p99.9 since startup, plus _sum and _count)
+ * with an errors_total counter and an in_flight gauge. Timers are created once and kept in
+ * static fields, so timing a call is two System.nanoTime() reads and a few uncontended atomic
+ * adds, with no lookup and no allocation.
+ *
+ * Values that other components already count (pool, cache and executor statistics) are
+ * registered as callbacks with {@link #counter} and {@link #gauge} and read only when scraped.
+ */
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    private static final List<Callback> callbacks = new CopyOnWriteArrayList<>();
+
+    private Metrics() {
+    }
+
+    // ----------------------------
+    // Registration
+    // ----------------------------
+
+    /**
+     * Returns the family of timed operations with the given name prefix, creating it on first use.
+     *
+     * @param prefix    the metric name prefix, e.g. "datastore_operation"
+     * @param labelName the label that tells the operations apart, e.g. "operation"
+     * @param help      what the operations are
+     * @return the family
+     */
+    public static Family family(String prefix, String labelName, String help) {
+        return families.computeIfAbsent(prefix, p -> new Family(p, labelName, help));
+    }
+
+    /**
+     * Registers a monotonically increasing value that is read when metrics are scraped.
+     *
+     * @param name  the metric name, ending in _total
+     * @param help  what is counted
+     * @param value reads the current count
+     */
+    public static void counter(String name, String help, DoubleSupplier value) {
+        register(new Callback(name, help, "counter", value));
+    }
+
+    /**
+     * Registers a value that can go up and down, read when metrics are scraped.
+     *
+     * @param name  the metric name
+     * @param help  what is measured
+     * @param value reads the current value; NaN if it is not available
+     */
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        register(new Callback(name, help, "gauge", value));
+    }
+
+    private static void register(Callback callback) {
+        // Re-registering a name (e.g. a second server in one JVM) replaces the old callback
+        callbacks.removeIf(c -> c.name.equals(callback.name));
+        callbacks.add(callback);
+    }
+
+    // ----------------------------
+    // Exposition
+    // ----------------------------
+
+    /**
+     * Writes every metric in the Prometheus text format (version 0.0.4).
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public static void writePrometheus(Writer out) throws IOException {
+        for (Family family : families.values()) {
+            family.write(out);
+        }
+        for (Callback callback : callbacks) {
+            double value = callback.value.getAsDouble();
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            header(out, callback.name, callback.help, callback.type);
+            out.write(callback.name);
+            out.write(' ');
+            out.write(formatValue(value));
+            out.write('\n');
+        }
+    }
+
+    private static void header(Writer out, String name, String help, String type) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // ----------------------------
+    // Families and Timers
+    // ----------------------------
+
+    /**
+     * A group of timed operations that share metric names and differ in one label.
+     */
+    public static class Family {
+        private final String prefix;
+        private final String labelName;
+        private final String help;
+        private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+        private Family(String prefix, String labelName, String help) {
+            this.prefix = prefix;
+            this.labelName = labelName;
+            this.help = help;
+        }
+
+        /**
+         * Returns the timer for one operation, creating it on first use. Keep the result in a
+         * field rather than looking it up on every call.
+         *
+         * @param labelValue the operation's label value, e.g. "findProductById"
+         * @return the timer
+         */
+        public Timer timer(String labelValue) {
+            return timers.computeIfAbsent(labelValue, v -> new Timer());
+        }
+
+        private void write(Writer out) throws IOException {
+            Map<String, Timer> sorted = new TreeMap<>(timers);
+
+            String duration = prefix + "_duration_seconds";
+            header(out, duration, help + " latency in seconds.", "summary");
+            for (Map.Entry<String, Timer> entry : sorted.entrySet()) {
+                String label = labelName + "=\"" + escapeLabel(entry.getKey()) + "\"";
+                LatencyHistogram histogram = entry.getValue().histogram;
+                long[] values = histogram.valuesAtQuantiles(QUANTILES);
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    out.write(duration + "{" + label + ",quantile=\"" + QUANTILES[i] + "\"} "
+                            + formatValue(values[i] / 1e9) + "\n");
+                }
+                out.write(duration + "_sum{" + label + "} " + formatValue(histogram.getTotalNanos() / 1e9) + "\n");
+                out.write(duration + "_count{" + label + "} " + histogram.getCount() + "\n");
+            }
+
+            String errors = prefix + "_errors_total";
+            header(out, errors, help + " that failed.", "counter");
+            for (Map.Entry<String, Timer> entry : sorted.entrySet()) {
+                out.write(errors + "{" + labelName + "=\"" + escapeLabel(entry.getKey()) + "\"} "
+                        + entry.getValue().errors.sum() + "\n");
+            }
+
+            String inFlight = prefix + "_in_flight";
+            header(out, inFlight, help + " currently running.", "gauge");
+            for (Map.Entry<String, Timer> entry : sorted.entrySet()) {
+                out.write(inFlight + "{" + labelName + "=\"" + escapeLabel(entry.getKey()) + "\"} "
+                        + entry.getValue().inFlight.sum() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Times one operation. Use it as
+     *
+     * <pre>
+     * long start = TIMER.start();
+     * try {
+     *     ...
+     * } catch (StorageException e) {
+     *     TIMER.error();
+     *     ...
+     * } finally {
+     *     TIMER.stop(start);
+     * }
+     * </pre>
+     */
+    public static class Timer {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+
+        /**
+         * Marks the operation as running.
+         *
+         * @return the start time, to pass to {@link #stop}
+         */
+        public long start() {
+            inFlight.increment();
+            return System.nanoTime();
+        }
+
+        /**
+         * Records the operation's duration and marks it as no longer running.
+         *
+         * @param startNanos the value returned by {@link #start}
+         */
+        public void stop(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+            inFlight.decrement();
+        }
+
+        /**
+         * Counts a failure of the operation; call it as well as {@link #stop}.
+         */
+        public void error() {
+            errors.increment();
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+    }
+
+    private static class Callback {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final DoubleSupplier value;
+
+        Callback(String name, String help, String type, DoubleSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+
+/**
+ * Times every exchange of one HTTP context, from the filter chain's start to the handler's
+ * return, and counts as errors the exchanges that answered 5xx or threw. Exchanges that threw
+ * are also logged, since the HTTP server drops the exception silently.
+ *
+ * Registered ahead of the {@link AdmissionFilter}, so exchanges shed with 503 show up too.
+ */
+public class MetricsFilter extends Filter {
+    private static final Metrics.Family HTTP_REQUESTS = Metrics.family("http_request", "context", "HTTP requests");
+
+    private final Metrics.Timer timer;
+
+    /**
+     * @param contextPath the context the filter is registered on, used as the metrics label
+     */
+    public MetricsFilter(String contextPath) {
+        this.timer = HTTP_REQUESTS.timer(contextPath);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long start = timer.start();
+        boolean failed = true;
+        try {
+            chain.doFilter(exchange);
+            failed = exchange.getResponseCode() >= 500;
+        } catch (IOException e) {
+            // Usually the client went away mid-response
+            Log.warn("Request failed.", "method", exchange.getRequestMethod(), "uri", exchange.getRequestURI(),
+                    "error", e.toString());
+            throw e;
+        } catch (RuntimeException e) {
+            // The HTTP server would close the exchange without a trace
+            Log.error("Request failed.", e, "method", exchange.getRequestMethod(), "uri", exchange.getRequestURI());
+            throw e;
+        } finally {
+            if (failed) {
+                timer.error();
+            }
+            timer.stop(start);
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Records request latency, errors and in-flight requests";
+    }
+}
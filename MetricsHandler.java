@@ -0,0 +1,24 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Serves /metrics in the Prometheus text exposition format.
+ */
+public class MetricsHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
+            HttpResponses.send(exchange, 405, "Method Not Allowed");
+            return;
+        }
+
+        StringWriter out = new StringWriter(16384);
+        Metrics.writePrometheus(out);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=UTF-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        HttpResponses.send(exchange, 200, out.toString());
+    }
+}
@@ -0,0 +1,137 @@
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Customer profiles stored in the MongoDB "customers" collection.
+ */
+public class MongoCustomerRepository implements CustomerRepository {
+    private final MongoCollection<Document> customersCollection;
+
+    public MongoCustomerRepository(MongoDatabase mongoDatabase) {
+        this.customersCollection = mongoDatabase.getCollection("customers");
+    }
+
+    @Override
+    public void create(Customer customer) throws StorageException {
+        Document customerDoc = new Document("user_id", customer.getUserId())
+                .append("first_name", customer.getFirstName())
+                .append("last_name", customer.getLastName())
+                .append("email", customer.getEmail())
+                .append("phone_number", customer.getPhoneNumber())
+                .append("payment_methods", convertPaymentMethods(customer.getPaymentMethods()));
+
+        try {
+            customersCollection.insertOne(customerDoc);
+            customer.setId(customerDoc.getObjectId("_id"));
+        } catch (MongoException e) {
+            throw new StorageException("Error creating customer.", e);
+        }
+    }
+
+    @Override
+    public Customer findByUserId(int userId) throws StorageException {
+        Document query = new Document("user_id", userId);
+        Document doc;
+        try {
+            doc = customersCollection.find(query).first();
+        } catch (MongoException e) {
+            throw new StorageException("Error finding customer.", e);
+        }
+
+        if (doc != null) {
+            String firstName = doc.getString("first_name");
+            String lastName = doc.getString("last_name");
+            String email = doc.getString("email");
+            String phoneNumber = doc.getString("phone_number");
+            List<Document> paymentDocs = doc.getList("payment_methods", Document.class, new ArrayList<>());
+            List<PaymentMethod> paymentMethods = convertDocumentsToPaymentMethods(paymentDocs);
+
+            Customer customer = new Customer(userId, firstName, lastName, email, phoneNumber, paymentMethods);
+            customer.setId(doc.getObjectId("_id"));
+            return customer;
+        }
+
+        return null;
+    }
+
+    @Override
+    public void updateProfile(Customer customer) throws StorageException {
+        Document query = new Document("user_id", customer.getUserId());
+
+        Document updatedDoc = new Document("$set", new Document("first_name", customer.getFirstName())
+                .append("last_name", customer.getLastName())
+                .append("email", customer.getEmail())
+                .append("phone_number", customer.getPhoneNumber()));
+
+        try {
+            customersCollection.updateOne(query, updatedDoc);
+        } catch (MongoException e) {
+            throw new StorageException("Error updating customer profile.", e);
+        }
+    }
+
+    @Override
+    public void updatePaymentMethods(int userId, List<PaymentMethod> paymentMethods) throws StorageException {
+        Document query = new Document("user_id", userId);
+
+        Document updatedDoc = new Document("$set", new Document("payment_methods", convertPaymentMethods(paymentMethods)));
+
+        try {
+            customersCollection.updateOne(query, updatedDoc);
+        } catch (MongoException e) {
+            throw new StorageException("Error updating customer payment methods.", e);
+        }
+    }
+
+    @Override
+    public boolean exists(int userId) throws StorageException {
+        Document query = new Document("user_id", userId);
+        try {
+            return customersCollection.find(query).first() != null;
+        } catch (MongoException e) {
+            throw new StorageException("Error checking customer.", e);
+        }
+    }
+
+    // ----------------------------
+    // Helper Methods
+    // ----------------------------
+
+    /**
+     * Converts a list of PaymentMethod objects to a list of MongoDB Documents.
+     *
+     * @param paymentMethods list of PaymentMethod objects
+     * @return list of Document objects
+     */
+    private static List<Document> convertPaymentMethods(List<PaymentMethod> paymentMethods) {
+        List<Document> paymentDocs = new ArrayList<>();
+        for (PaymentMethod pm : paymentMethods) {
+            Document pmDoc = new Document("type", pm.getType())
+                    .append("details", pm.getDetails());
+            paymentDocs.add(pmDoc);
+        }
+        return paymentDocs;
+    }
+
+    /**
+     * Converts a list of MongoDB Documents to a list of PaymentMethod objects.
+     *
+     * @param paymentDocs list of Document objects
+     * @return list of PaymentMethod objects
+     */
+    private static List<PaymentMethod> convertDocumentsToPaymentMethods(List<Document> paymentDocs) {
+        List<PaymentMethod> paymentMethods = new ArrayList<>();
+        for (Document pmDoc : paymentDocs) {
+            String type = pmDoc.getString("type");
+            String details = pmDoc.getString("details");
+            paymentMethods.add(new PaymentMethod(type, details));
+        }
+        return paymentMethods;
+    }
+}
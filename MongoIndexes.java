@@ -0,0 +1,268 @@
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Creates the MongoDB indexes the repositories' queries rely on and checks that the queries use
+ * them.
+ *
+ * Run once when the database backend starts. For each index below, an existing index with the
+ * same keys is accepted as is (with a warning if it differs in uniqueness); otherwise the
+ * index is created. An index that cannot be checked or created is logged and skipped; when a
+ * unique index fails because of duplicate values, the first few duplicates are logged too.
+ * Then every query shape DataStore sends is explained, and any whose winning plan contains a
+ * collection scan (COLLSCAN) is logged as a warning. Nothing here stops the backend from
+ * starting.
+ *
+ * Skip it with -Dmongo.indexes.disabled=true, e.g. when indexes are managed by a DBA.
+ */
+public final class MongoIndexes {
+    private static final int DUPLICATES_REPORTED = 10;
+
+    private static final List<IndexSpec> INDEXES = List.of(
+            // findOrderById and the outbox relay's upserts; orders from before order IDs have none
+            new IndexSpec("orders", new Document("order_id", 1), true,
+                    new Document("order_id", new Document("$exists", true))),
+            // getOrdersForUser, including its keyset paging on (order_date, _id)
+            new IndexSpec("orders", new Document("user_id", 1).append("order_date", -1).append("_id", -1), false, null),
+            // getCustomerByUserId, isUserIdInMongoDB and the profile updates
+            new IndexSpec("customers", new Document("user_id", 1), true, null),
+            // The low-stock monitor's pending refill lookup
+            new IndexSpec("refill_orders", new Document("status", 1).append("product_id", 1), false, null),
+            // At most one pending automatic refill order per product, even with several monitors
+            new IndexSpec("refill_orders", new Document("product_id", 1), true,
+                    new Document("status", "Pending")
+                            .append("created_by", MongoRefillOrderRepository.CREATED_BY_MONITOR)),
+            // Sales report date ranges and the per-order upserts into the rollups
+            new IndexSpec(SalesRollup.DAILY_COLLECTION, new Document("bucket", 1).append("product_id", 1), true, null),
+            new IndexSpec(SalesRollup.HOURLY_COLLECTION, new Document("bucket", 1).append("product_id", 1), true, null)
+    );
+
+    private MongoIndexes() {
+    }
+
+    /**
+     * Creates missing indexes and warns about queries that would scan a collection.
+     *
+     * @param mongoDatabase the database to check
+     */
+    public static void ensure(MongoDatabase mongoDatabase) {
+        if (Boolean.getBoolean("mongo.indexes.disabled")) {
+            return;
+        }
+        try {
+            int created = 0;
+            int failed = 0;
+            for (IndexSpec spec : INDEXES) {
+                MongoCollection<Document> collection = mongoDatabase.getCollection(spec.collection);
+                try {
+                    if (ensureIndex(collection, spec)) {
+                        created++;
+                    }
+                } catch (MongoTimeoutException e) {
+                    throw e;
+                } catch (MongoException e) {
+                    failed++;
+                    Log.error("Error ensuring MongoDB index.", e, "collection", spec.collection,
+                            "keys", spec.keys.toJson());
+                    if (spec.unique && ErrorCategory.fromErrorCode(e.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                        reportDuplicates(collection, spec);
+                    }
+                }
+            }
+            int scans = checkQueryPlans(mongoDatabase);
+            Log.info("MongoDB indexes checked.", "created", created, "failed", failed, "collectionScans", scans);
+        } catch (MongoTimeoutException e) {
+            Log.warn("MongoDB not reachable; indexes not checked.", e);
+        }
+    }
+
+    /**
+     * @return true if the index was created
+     * @throws MongoException if the indexes could not be listed or the index could not be built
+     */
+    private static boolean ensureIndex(MongoCollection<Document> collection, IndexSpec spec) {
+        for (Document index : collection.listIndexes()) {
+            if (sameKeys(spec.keys, index.get("key", Document.class))) {
+                if (spec.unique != index.getBoolean("unique", false)) {
+                    Log.warn("MongoDB index differs from the expected one.", "collection", spec.collection,
+                            "keys", spec.keys.toJson(), "expectedUnique", spec.unique);
+                }
+                return false;
+            }
+        }
+        IndexOptions options = new IndexOptions().unique(spec.unique);
+        if (spec.partialFilter != null) {
+            options.partialFilterExpression(spec.partialFilter);
+        }
+        collection.createIndex(spec.keys, options);
+        Log.info("MongoDB index created.", "collection", spec.collection, "keys", spec.keys.toJson());
+        return true;
+    }
+
+    /**
+     * Logs the first key values that occur more than once among the documents a unique index
+     * covers, so they can be fixed before the next start.
+     */
+    private static void reportDuplicates(MongoCollection<Document> collection, IndexSpec spec) {
+        Document groupKey = new Document();
+        for (String field : spec.keys.keySet()) {
+            groupKey.append(field, "$" + field);
+        }
+        List<Bson> pipeline = new ArrayList<>();
+        if (spec.partialFilter != null) {
+            pipeline.add(Aggregates.match(spec.partialFilter));
+        }
+        pipeline.add(Aggregates.group(groupKey, Accumulators.sum("count", 1)));
+        pipeline.add(Aggregates.match(Filters.gt("count", 1)));
+        pipeline.add(Aggregates.limit(DUPLICATES_REPORTED));
+        try {
+            int reported = 0;
+            for (Document duplicate : collection.aggregate(pipeline).allowDiskUse(true)) {
+                reported++;
+                Log.warn("Duplicate values keep a unique MongoDB index from being built.",
+                        "collection", spec.collection, "values", duplicate.get("_id", Document.class).toJson(),
+                        "count", duplicate.get("count"));
+            }
+            if (reported == DUPLICATES_REPORTED) {
+                Log.warn("More duplicate values may exist; only the first ones were logged.",
+                        "collection", spec.collection, "logged", reported);
+            }
+        } catch (MongoTimeoutException e) {
+            throw e;
+        } catch (MongoException e) {
+            Log.warn("Could not look for duplicate values.", e, "collection", spec.collection);
+        }
+    }
+
+    /**
+     * Compares index keys by field order and direction, since the server may return 1 as 1.0.
+     */
+    private static boolean sameKeys(Document expected, Document actual) {
+        if (actual == null || !new ArrayList<>(expected.keySet()).equals(new ArrayList<>(actual.keySet()))) {
+            return false;
+        }
+        for (String field : expected.keySet()) {
+            Object value = actual.get(field);
+            if (!(value instanceof Number)
+                    || Math.signum(((Number) value).doubleValue()) != Math.signum(expected.getInteger(field))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ----------------------------
+    // Query Plan Check
+    // ----------------------------
+
+    /**
+     * Explains each query shape the repositories use, with placeholder values.
+     *
+     * @return the number of queries that would scan a collection
+     */
+    private static int checkQueryPlans(MongoDatabase mongoDatabase) {
+        Date now = new Date();
+        List<QueryShape> queries = new ArrayList<>();
+        queries.add(new QueryShape("findOrderById", "orders", Filters.eq("order_id", "ORD-0"), null));
+        queries.add(new QueryShape("getOrdersForUser", "orders",
+                Filters.and(Filters.eq("user_id", 0), Filters.lt("order_date", now)),
+                new Document("order_date", -1).append("_id", -1)));
+        queries.add(new QueryShape("getCustomerByUserId", "customers", Filters.eq("user_id", 0), null));
+        queries.add(new QueryShape("findPendingRefills", "refill_orders",
+                Filters.and(Filters.eq("status", "Pending"), Filters.in("product_id", List.of(0))), null));
+        queries.add(new QueryShape("generateSalesReport", SalesRollup.DAILY_COLLECTION,
+                Filters.and(Filters.gte("bucket", now), Filters.lte("bucket", now)), null));
+        queries.add(new QueryShape("recordSales", SalesRollup.HOURLY_COLLECTION,
+                Filters.and(Filters.eq("bucket", now), Filters.eq("product_id", 0)), null));
+
+        int scans = 0;
+        for (QueryShape query : queries) {
+            try {
+                Document find = new Document("find", query.collection)
+                        .append("filter", query.filter.toBsonDocument(Document.class, mongoDatabase.getCodecRegistry()));
+                if (query.sort != null) {
+                    find.append("sort", query.sort);
+                }
+                Document explain = mongoDatabase.runCommand(
+                        new Document("explain", find).append("verbosity", "queryPlanner"));
+                Document planner = explain.get("queryPlanner", Document.class);
+                if (planner != null && containsStage(planner.get("winningPlan"), "COLLSCAN")) {
+                    scans++;
+                    Log.warn("MongoDB query would scan its collection.", "query", query.name,
+                            "collection", query.collection);
+                }
+            } catch (MongoTimeoutException e) {
+                throw e;
+            } catch (MongoException e) {
+                Log.warn("Could not explain MongoDB query.", e, "query", query.name);
+            }
+        }
+        return scans;
+    }
+
+    /**
+     * Looks for a stage anywhere in an explain plan tree.
+     */
+    private static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document) {
+            Document doc = (Document) plan;
+            if (stage.equals(doc.get("stage"))) {
+                return true;
+            }
+            for (Object value : doc.values()) {
+                if (containsStage(value, stage)) {
+                    return true;
+                }
+            }
+        } else if (plan instanceof List) {
+            for (Object item : (List<?>) plan) {
+                if (containsStage(item, stage)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static class IndexSpec {
+        private final String collection;
+        private final Document keys;
+        private final boolean unique;
+        private final Document partialFilter;
+
+        IndexSpec(String collection, Document keys, boolean unique, Document partialFilter) {
+            this.collection = collection;
+            this.keys = keys;
+            this.unique = unique;
+            this.partialFilter = partialFilter;
+        }
+    }
+
+    private static class QueryShape {
+        private final String name;
+        private final String collection;
+        private final Bson filter;
+        private final Document sort;
+
+        QueryShape(String name, String collection, Bson filter, Document sort) {
+            this.name = name;
+            this.collection = collection;
+            this.filter = filter;
+            this.sort = sort;
+        }
+    }
+}
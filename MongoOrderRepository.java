@@ -0,0 +1,156 @@
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Orders stored in the MongoDB "orders" collection.
+ */
+public class MongoOrderRepository implements OrderRepository {
+    private final MongoCollection<Document> ordersCollection;
+
+    public MongoOrderRepository(MongoDatabase mongoDatabase) {
+        this.ordersCollection = mongoDatabase.getCollection("orders");
+    }
+
+    @Override
+    public Order findById(String orderId) throws StorageException {
+        Document query = new Document("order_id", orderId);
+        Document doc;
+        try {
+            doc = ordersCollection.find(query).first();
+        } catch (MongoException e) {
+            throw new StorageException("Error finding order.", e);
+        }
+
+        if (doc != null) {
+            return readOrder(doc, doc.getString("order_id"));
+        }
+
+        // Order not found
+        return null;
+    }
+
+    @Override
+    public List<Order> findByUserId(int userId) throws StorageException {
+        List<Order> userOrders = new ArrayList<>();
+        Document query = new Document("user_id", userId);
+        try {
+            for (Document doc : ordersCollection.find(query)) {
+                ObjectId orderIdObj = doc.getObjectId("_id");
+                userOrders.add(readOrder(doc, orderIdObj.toHexString()));
+            }
+        } catch (MongoException e) {
+            throw new StorageException("Error retrieving orders for user.", e);
+        }
+        return userOrders;
+    }
+
+    /**
+     * Pages with a range condition on (order_date, _id) instead of skip(), so each page is a
+     * seek on an index over {user_id, order_date, _id} however old the orders on it are. Orders
+     * from this collection are identified by their _id, as in {@link #findByUserId(int)}.
+     */
+    @Override
+    public List<Order> findByUserId(int userId, OrderCursor after, int limit) throws StorageException {
+        Bson query = Filters.eq("user_id", userId);
+        if (after != null) {
+            if (!ObjectId.isValid(after.getOrderId())) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+            Date afterDate = after.getOrderDate();
+            query = Filters.and(query, Filters.or(
+                    Filters.lt("order_date", afterDate),
+                    Filters.and(Filters.eq("order_date", afterDate),
+                            Filters.lt("_id", new ObjectId(after.getOrderId())))));
+        }
+
+        List<Order> userOrders = new ArrayList<>();
+        try {
+            for (Document doc : ordersCollection.find(query)
+                    .sort(Sorts.descending("order_date", "_id"))
+                    .limit(limit)) {
+                userOrders.add(readOrder(doc, doc.getObjectId("_id").toHexString()));
+            }
+        } catch (MongoException e) {
+            throw new StorageException("Error retrieving orders for user.", e);
+        }
+        return userOrders;
+    }
+
+    @Override
+    public void insertAll(List<Order> orders) throws StorageException {
+        List<Document> orderDocs = new ArrayList<>();
+        for (Order order : orders) {
+            orderDocs.add(toDocument(order));
+        }
+        try {
+            ordersCollection.insertMany(orderDocs);
+        } catch (MongoException e) {
+            throw new StorageException("Error creating orders.", e);
+        }
+    }
+
+    /**
+     * One unordered bulk write of upserts that only set fields on insert ($setOnInsert), so an
+     * order that is already stored is left exactly as it is. Concurrent upserts of the same
+     * order are only kept apart by a unique index on order_id.
+     */
+    @Override
+    public List<Order> upsertAll(List<Order> orders) throws StorageException {
+        List<Order> inserted = new ArrayList<>();
+        if (orders.isEmpty()) {
+            return inserted;
+        }
+        List<WriteModel<Document>> upserts = new ArrayList<>();
+        for (Order order : orders) {
+            upserts.add(new UpdateOneModel<>(Filters.eq("order_id", order.getOrderId()),
+                    new Document("$setOnInsert", toDocument(order)), new UpdateOptions().upsert(true)));
+        }
+        try {
+            BulkWriteResult result = ordersCollection.bulkWrite(upserts, new BulkWriteOptions().ordered(false));
+            for (BulkWriteUpsert upsert : result.getUpserts()) {
+                inserted.add(orders.get(upsert.getIndex()));
+            }
+        } catch (MongoException e) {
+            throw new StorageException("Error storing orders.", e);
+        }
+        return inserted;
+    }
+
+    private static Document toDocument(Order order) {
+        return new Document("order_id", order.getOrderId())
+                .append("user_id", order.getUserId())
+                .append("product_id", order.getProductId())
+                .append("quantity", order.getQuantity())
+                .append("order_date", order.getOrderDate())
+                .append("status", order.getStatus())
+                .append("product_price", order.getProductPrice());
+    }
+
+    private static Order readOrder(Document doc, String orderId) {
+        int userId = doc.getInteger("user_id", 0);
+        int productId = doc.getInteger("product_id", 0);
+        int quantity = doc.getInteger("quantity", 0);
+        Date orderDate = doc.getDate("order_date");
+        String status = doc.getString("status");
+        Number price = (Number) doc.get("product_price");
+        return new Order(orderId, userId, productId, quantity, orderDate, status,
+                price != null ? price.doubleValue() : 0.0);
+    }
+}
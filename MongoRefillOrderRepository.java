@@ -0,0 +1,110 @@
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Refill orders stored in the MongoDB "refill_orders" collection.
+ *
+ * Orders placed by the low-stock monitor are marked with created_by, and a partial unique
+ * index on product_id over the pending ones (see {@link MongoIndexes}) keeps monitors in
+ * different processes from ordering the same product twice. Refill orders created by hand are
+ * not marked and not limited.
+ */
+public class MongoRefillOrderRepository implements RefillOrderRepository {
+    static final String CREATED_BY_MONITOR = "low-stock-monitor";
+
+    private final MongoCollection<Document> refillOrdersCollection;
+
+    public MongoRefillOrderRepository(MongoDatabase mongoDatabase) {
+        this.refillOrdersCollection = mongoDatabase.getCollection("refill_orders");
+    }
+
+    @Override
+    public void create(int productId, int quantity) throws StorageException {
+        try {
+            refillOrdersCollection.insertOne(toDocument(productId, quantity, new Date(), null));
+        } catch (MongoException e) {
+            throw new StorageException("Error creating refill order.", e);
+        }
+    }
+
+    /**
+     * Inserts all refill orders with a single unordered insertMany. Inserts refused by the
+     * unique index on pending automatic refill orders are skipped; any other error fails the
+     * call.
+     */
+    @Override
+    public int createAll(List<OrderLine> refills) throws StorageException {
+        if (refills.isEmpty()) {
+            return 0;
+        }
+        Date orderDate = new Date();
+        List<Document> docs = new ArrayList<>(refills.size());
+        for (OrderLine refill : refills) {
+            docs.add(toDocument(refill.getProductId(), refill.getQuantity(), orderDate, CREATED_BY_MONITOR));
+        }
+        try {
+            refillOrdersCollection.insertMany(docs, new InsertManyOptions().ordered(false));
+            return docs.size();
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw new StorageException("Error creating refill orders.", e);
+                }
+            }
+            if (e.getWriteConcernError() != null) {
+                throw new StorageException("Error creating refill orders.", e);
+            }
+            return e.getWriteResult().getInsertedCount();
+        } catch (MongoException e) {
+            throw new StorageException("Error creating refill orders.", e);
+        }
+    }
+
+    /**
+     * Looks the products up with one $in query, returning only product_id.
+     */
+    @Override
+    public Set<Integer> findPendingProductIds(Collection<Integer> productIds) throws StorageException {
+        Set<Integer> pending = new HashSet<>();
+        if (productIds.isEmpty()) {
+            return pending;
+        }
+        try {
+            for (Document doc : refillOrdersCollection
+                    .find(Filters.and(Filters.eq("status", "Pending"), Filters.in("product_id", productIds)))
+                    .projection(Projections.fields(Projections.include("product_id"), Projections.excludeId()))) {
+                pending.add(doc.getInteger("product_id"));
+            }
+        } catch (MongoException e) {
+            throw new StorageException("Error finding pending refill orders.", e);
+        }
+        return pending;
+    }
+
+    private static Document toDocument(int productId, int quantity, Date orderDate, String createdBy) {
+        Document doc = new Document("product_id", productId)
+                .append("quantity", quantity)
+                .append("order_date", orderDate)
+                .append("status", "Pending");
+        if (createdBy != null) {
+            doc.append("created_by", createdBy);
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,158 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The order outbox as the MySQL "order_outbox" table, next to the products whose stock the
+ * orders took. The table is created on first use.
+ */
+public class MySqlOrderOutbox implements OrderOutbox {
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS order_outbox ("
+            + "outbox_id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "order_id VARCHAR(32) NOT NULL UNIQUE, "
+            + "user_id INT NOT NULL, "
+            + "product_id INT NOT NULL, "
+            + "quantity INT NOT NULL, "
+            + "order_date DATETIME(3) NOT NULL, "
+            + "status VARCHAR(20) NOT NULL, "
+            + "product_price DOUBLE NOT NULL)";
+    private static final String COLUMNS = "order_id, user_id, product_id, quantity, order_date, status, product_price";
+
+    private final ConnectionPool connectionPool;
+    // Conditional stock updates; DataStore mirrors committed changes into its catalog
+    private final Inventory inventory = new Inventory(null, 1);
+    private volatile boolean tableChecked = false;
+
+    public MySqlOrderOutbox(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Decrements stock for all lines in one JDBC batch and inserts the orders of the lines that
+     * got their stock with one multi-row INSERT, in a single transaction.
+     */
+    @Override
+    public boolean[] placeOrders(List<OrderLine> lines, int[] stockToKeep, List<Order> orders) throws StorageException {
+        ensureTable();
+        try (Connection conn = connectionPool.getConnection()) {
+            conn.setAutoCommit(false);
+            boolean[] decremented = inventory.tryDecrementAll(conn, lines, stockToKeep);
+            List<Order> placed = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                if (decremented[i]) {
+                    placed.add(orders.get(i));
+                }
+            }
+            if (!placed.isEmpty()) {
+                insert(conn, placed);
+            }
+            conn.commit();
+            return decremented;
+        } catch (SQLException e) {
+            // The pool rolls the transaction back when the connection is returned
+            throw new StorageException("Error placing orders.", e);
+        }
+    }
+
+    private static void insert(Connection conn, List<Order> orders) throws SQLException {
+        StringBuilder query = new StringBuilder("INSERT INTO order_outbox (" + COLUMNS + ") VALUES ");
+        for (int i = 0; i < orders.size(); i++) {
+            query.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?)");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            int index = 1;
+            for (Order order : orders) {
+                stmt.setString(index++, order.getOrderId());
+                stmt.setInt(index++, order.getUserId());
+                stmt.setInt(index++, order.getProductId());
+                stmt.setInt(index++, order.getQuantity());
+                stmt.setTimestamp(index++, new Timestamp(order.getOrderDate().getTime()));
+                stmt.setString(index++, order.getStatus());
+                stmt.setDouble(index++, order.getProductPrice());
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public Order findById(String orderId) throws StorageException {
+        ensureTable();
+        String query = "SELECT " + COLUMNS + " FROM order_outbox WHERE order_id = ?";
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, orderId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? readOrder(rs) : null;
+        } catch (SQLException e) {
+            throw new StorageException("Error finding order in outbox.", e);
+        }
+    }
+
+    @Override
+    public List<Order> peek(int limit) throws StorageException {
+        ensureTable();
+        String query = "SELECT " + COLUMNS + " FROM order_outbox ORDER BY outbox_id LIMIT ?";
+        List<Order> orders = new ArrayList<>();
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                orders.add(readOrder(rs));
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Error reading order outbox.", e);
+        }
+        return orders;
+    }
+
+    /**
+     * Deletes the given orders with a single IN query.
+     */
+    @Override
+    public void remove(List<Order> orders) throws StorageException {
+        if (orders.isEmpty()) {
+            return;
+        }
+        StringBuilder query = new StringBuilder("DELETE FROM order_outbox WHERE order_id IN (");
+        for (int i = 0; i < orders.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            int index = 1;
+            for (Order order : orders) {
+                stmt.setString(index++, order.getOrderId());
+            }
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new StorageException("Error removing orders from outbox.", e);
+        }
+    }
+
+    private void ensureTable() throws StorageException {
+        if (tableChecked) {
+            return;
+        }
+        try (Connection conn = connectionPool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE);
+            tableChecked = true;
+        } catch (SQLException e) {
+            throw new StorageException("Error creating order outbox table.", e);
+        }
+    }
+
+    private static Order readOrder(ResultSet rs) throws SQLException {
+        return new Order(rs.getString("order_id"), rs.getInt("user_id"), rs.getInt("product_id"),
+                rs.getInt("quantity"), new Date(rs.getTimestamp("order_date").getTime()), rs.getString("status"),
+                rs.getDouble("product_price"));
+    }
+}
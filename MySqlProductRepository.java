@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Products stored in the MySQL "products" table.
+ */
+public class MySqlProductRepository implements ProductRepository {
+    // Rows read per query by searchInto
+    private static final int SEARCH_CHUNK_SIZE = 500;
+
+    private final ConnectionPool connectionPool;
+    // Conditional stock updates; DataStore mirrors committed changes into its catalog
+    private final Inventory inventory = new Inventory(null, 1);
+
+    public MySqlProductRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    @Override
+    public Product findById(int productId) throws StorageException {
+        String query = "SELECT * FROM products WHERE product_id = ?";
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, productId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return readProduct(rs);
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new StorageException("Error finding product by ID.", e);
+        }
+    }
+
+    /**
+     * Reads the given products with a single IN query.
+     */
+    @Override
+    public Map<Integer, Product> findByIds(Collection<Integer> productIds) throws StorageException {
+        Map<Integer, Product> products = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return products;
+        }
+        StringBuilder query = new StringBuilder("SELECT * FROM products WHERE product_id IN (");
+        for (int i = 0; i < productIds.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            int index = 1;
+            for (int productId : productIds) {
+                stmt.setInt(index++, productId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Product product = readProduct(rs);
+                    products.put(product.getProductId(), product);
+                }
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Error finding products by IDs.", e);
+        }
+        return products;
+    }
+
+    @Override
+    public List<Product> findAll() throws StorageException {
+        List<Product> products = new ArrayList<>();
+        String query = "SELECT * FROM products";
+        try (Connection conn = connectionPool.getConnection();
+            PreparedStatement stmt = conn.prepareStatement(query);
+            ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                products.add(readProduct(rs));
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Error retrieving all products.", e);
+        }
+        return products;
+    }
+
+    @Override
+    public List<Product> search(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                                Integer afterProductId, int limit) throws StorageException {
+        List<Product> products = new ArrayList<>();
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = prepareSearch(conn, productId, name, priceLessThan, priceGreaterThan,
+                     afterProductId, limit);
+             ResultSet rs = stmt.executeQuery()) {
+
+            // Map the result set to Product objects
+            while (rs.next()) {
+                products.add(readProduct(rs));
+            }
+
+        } catch (SQLException e) {
+            throw new StorageException("Error searching products.", e);
+        }
+
+        return products;
+    }
+
+    /**
+     * Reads the matches in chunks of at most {@value #SEARCH_CHUNK_SIZE} rows, each chunk a
+     * keyset query of its own that starts after the last product of the previous one, and
+     * hands a chunk to the sink only once its connection is back in the pool. A slow client
+     * therefore never holds a pooled connection, and memory use stays at one chunk however
+     * many products match. Each chunk sees the table as of its own query.
+     */
+    @Override
+    public void searchInto(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                           Integer afterProductId, int limit, ProductSink sink) throws StorageException, IOException {
+        Integer after = afterProductId;
+        int remaining = limit;
+        while (remaining > 0) {
+            int chunkSize = Math.min(remaining, SEARCH_CHUNK_SIZE);
+            List<Product> chunk = search(productId, name, priceLessThan, priceGreaterThan, after, chunkSize);
+            for (Product product : chunk) {
+                sink.accept(product);
+            }
+            if (chunk.size() < chunkSize) {
+                return;
+            }
+            remaining -= chunkSize;
+            after = chunk.get(chunk.size() - 1).getProductId();
+        }
+    }
+
+    /**
+     * Builds the search query. Pages are selected with "product_id > ?" rather than OFFSET, so
+     * MySQL starts each page with a seek on the primary key instead of reading and discarding
+     * the rows of every earlier page.
+     */
+    private static PreparedStatement prepareSearch(Connection conn, Integer productId, String name,
+                                                   Double priceLessThan, Double priceGreaterThan,
+                                                   Integer afterProductId, int limit) throws SQLException {
+        StringBuilder queryBuilder = new StringBuilder("SELECT * FROM products WHERE 1=1");
+        List<Object> parameters = new ArrayList<>();
+
+        // Dynamically build the query based on non-null parameters
+        if (productId != null) {
+            queryBuilder.append(" AND product_id = ?");
+            parameters.add(productId);
+        }
+
+        if (name != null && !name.trim().isEmpty()) {
+            queryBuilder.append(" AND name LIKE ?");
+            parameters.add("%" + name.trim() + "%"); // Using wildcard for partial matches
+        }
+
+        if (priceLessThan != null) {
+            queryBuilder.append(" AND price < ?");
+            parameters.add(priceLessThan);
+        }
+
+        if (priceGreaterThan != null) {
+            queryBuilder.append(" AND price > ?");
+            parameters.add(priceGreaterThan);
+        }
+
+        if (afterProductId != null) {
+            queryBuilder.append(" AND product_id > ?");
+            parameters.add(afterProductId);
+        }
+
+        queryBuilder.append(" ORDER BY product_id");
+
+        if (limit < Integer.MAX_VALUE) {
+            queryBuilder.append(" LIMIT ?");
+            parameters.add(Math.max(0, limit));
+        }
+
+        PreparedStatement stmt = conn.prepareStatement(queryBuilder.toString(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+        try {
+            // Bind parameters to the prepared statement
+            for (int i = 0; i < parameters.size(); i++) {
+                Object param = parameters.get(i);
+                if (param instanceof Integer) {
+                    stmt.setInt(i + 1, (Integer) param);
+                } else if (param instanceof Double) {
+                    stmt.setDouble(i + 1, (Double) param);
+                } else if (param instanceof String) {
+                    stmt.setString(i + 1, (String) param);
+                } else {
+                    stmt.setObject(i + 1, param);
+                }
+            }
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+        return stmt;
+    }
+
+    @Override
+    public int add(Product product) throws StorageException {
+        String query = "INSERT INTO products (name, description, price, stock) VALUES (?, ?, ?, ?)";
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, product.getName());
+            stmt.setString(2, product.getDescription());
+            stmt.setDouble(3, product.getPrice());
+            stmt.setInt(4, product.getStock());
+            if (stmt.executeUpdate() == 0) {
+                throw new StorageException("Adding product failed, no rows affected.");
+            }
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    return generatedKeys.getInt(1);
+                }
+                throw new StorageException("Adding product failed, no ID obtained.");
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Error adding product.", e);
+        }
+    }
+
+    @Override
+    public boolean update(Product product) throws StorageException {
+        String query = "UPDATE products SET name = ?, description = ?, price = ?, stock = ? WHERE product_id = ?";
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, product.getName());
+            stmt.setString(2, product.getDescription());
+            stmt.setDouble(3, product.getPrice());
+            stmt.setInt(4, product.getStock());
+            stmt.setInt(5, product.getProductId());
+            int rowsUpdated = stmt.executeUpdate();
+            return rowsUpdated > 0;
+        } catch (SQLException e) {
+            throw new StorageException("Error updating product.", e);
+        }
+    }
+
+    @Override
+    public boolean delete(int productId) throws StorageException {
+        String query = "DELETE FROM products WHERE product_id = ?";
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, productId);
+            int rowsDeleted = stmt.executeUpdate();
+            return rowsDeleted > 0;
+        } catch (SQLException e) {
+            throw new StorageException("Error deleting product.", e);
+        }
+    }
+
+    /**
+     * Decrements stock for all lines in one JDBC batch inside a single transaction.
+     */
+    @Override
+    public boolean[] decrementStock(List<OrderLine> lines, int[] stockToKeep) throws StorageException {
+        try (Connection conn = connectionPool.getConnection()) {
+            conn.setAutoCommit(false);
+            boolean[] decremented = inventory.tryDecrementAll(conn, lines, stockToKeep);
+            conn.commit();
+            return decremented;
+        } catch (SQLException e) {
+            throw new StorageException("Error updating product stock.", e);
+        }
+    }
+
+    @Override
+    public void incrementStock(List<OrderLine> lines, boolean[] selected) throws StorageException {
+        try (Connection conn = connectionPool.getConnection()) {
+            inventory.incrementAll(conn, lines, selected);
+        } catch (SQLException e) {
+            throw new StorageException("Error restoring product stock.", e);
+        }
+    }
+
+    private static Product readProduct(ResultSet rs) throws SQLException {
+        int productId = rs.getInt("product_id");
+        String name = rs.getString("name");
+        String description = rs.getString("description");
+        double price = rs.getDouble("price");
+        int stock = rs.getInt("stock");
+        return new Product(productId, name, description, price, stock);
+    }
+}
@@ -0,0 +1,61 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Users stored in the MySQL "users" table.
+ */
+public class MySqlUserRepository implements UserRepository {
+    private final ConnectionPool connectionPool;
+
+    public MySqlUserRepository(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    @Override
+    public User findByUsername(String username) throws StorageException {
+        String query = "SELECT * FROM users WHERE username = ?";
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, username);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                int userId = rs.getInt("user_id");
+                String uname = rs.getString("username");
+                String password = rs.getString("password"); // Plain-text password
+                String role = rs.getString("role");
+                return new User(userId, uname, password, role);
+            }
+            return null;
+        } catch (SQLException e) {
+            throw new StorageException("Error finding user by username.", e);
+        }
+    }
+
+    @Override
+    public int create(String username, String password, String role) throws StorageException {
+        String insertUserQuery = "INSERT INTO users (username, password, role) VALUES (?, ?, ?)";
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(insertUserQuery, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, username);
+            stmt.setString(2, password); // Store plain-text password
+            stmt.setString(3, role);
+            int affectedRows = stmt.executeUpdate();
+
+            if (affectedRows == 0) {
+                throw new StorageException("Creating user failed, no rows affected.");
+            }
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    return generatedKeys.getInt(1);
+                }
+                throw new StorageException("Creating user failed, no ID obtained.");
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Error creating user.", e);
+        }
+    }
+}
@@ -7,6 +7,7 @@ public class Order {
     private int quantity;
     private Date orderDate;
     private String status;
+    private double productPrice; // Unit price at the time the order was placed
 
     // Constructor matching the required signature
     public Order(String orderId, int userId, int productId, int quantity, Date orderDate, String status) {
@@ -18,6 +19,11 @@ public class Order {
         this.status = status;
     }
 
+    public Order(String orderId, int userId, int productId, int quantity, Date orderDate, String status, double productPrice) {
+        this(orderId, userId, productId, quantity, orderDate, status);
+        this.productPrice = productPrice;
+    }
+
     // Getters and Setters
     public String getOrderId() { return orderId; }
     public int getUserId() { return userId; }
@@ -25,6 +31,7 @@ public class Order {
     public int getQuantity() { return quantity; }
     public Date getOrderDate() { return orderDate; }
     public String getStatus() { return status; }
+    public double getProductPrice() { return productPrice; }
 
     public void setOrderId(String orderId) { this.orderId = orderId; }
     public void setUserId(int userId) { this.userId = userId; }
@@ -32,4 +39,5 @@ public class Order {
     public void setQuantity(int quantity) { this.quantity = quantity; }
     public void setOrderDate(Date orderDate) { this.orderDate = orderDate; }
     public void setStatus(String status) { this.status = status; }
+    public void setProductPrice(double productPrice) { this.productPrice = productPrice; }
 }
@@ -0,0 +1,86 @@
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Position in a user's order history, which is listed newest first: orders are ordered by
+ * order date, descending, and orders placed in the same millisecond (e.g. the lines of one
+ * cart) by order ID, descending. A page that starts after a cursor holds the orders strictly
+ * older than it in that order.
+ *
+ * Encoded as "&lt;order date in epoch milliseconds&gt;.&lt;order ID&gt;".
+ */
+public class OrderCursor implements Comparable<OrderCursor> {
+    private final long orderTime;
+    private final String orderId;
+
+    public OrderCursor(long orderTime, String orderId) {
+        this.orderTime = orderTime;
+        this.orderId = Objects.requireNonNull(orderId);
+    }
+
+    /**
+     * Returns the cursor of the page that follows the given order.
+     *
+     * @param last the last order of the current page
+     * @return the position of that order
+     */
+    public static OrderCursor of(Order last) {
+        Date orderDate = last.getOrderDate();
+        return new OrderCursor(orderDate != null ? orderDate.getTime() : 0L, last.getOrderId());
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #toString()}.
+     *
+     * @param cursor the encoded cursor, or null for the first page
+     * @return the position, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static OrderCursor parse(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        int dot = cursor.indexOf('.');
+        if (dot <= 0 || dot == cursor.length() - 1) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        try {
+            return new OrderCursor(Long.parseLong(cursor.substring(0, dot)), cursor.substring(dot + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    // Getters
+    public long getOrderTime() { return orderTime; }
+    public Date getOrderDate() { return new Date(orderTime); }
+    public String getOrderId() { return orderId; }
+
+    /**
+     * Orders positions oldest first; history pages walk them in reverse.
+     */
+    @Override
+    public int compareTo(OrderCursor other) {
+        int byTime = Long.compare(orderTime, other.orderTime);
+        return byTime != 0 ? byTime : orderId.compareTo(other.orderId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof OrderCursor)) {
+            return false;
+        }
+        OrderCursor other = (OrderCursor) o;
+        return orderTime == other.orderTime && orderId.equals(other.orderId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(orderTime) * 31 + orderId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return orderTime + "." + orderId;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * One line of a cart: a product and the quantity wanted.
+ */
+public class OrderLine {
+    private int productId;
+    private int quantity;
+    private String reservationId; // Stock held for this line while it sat in the cart; may be null
+
+    public OrderLine(int productId, int quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public OrderLine(int productId, int quantity, String reservationId) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.reservationId = reservationId;
+    }
+
+    // Getters and Setters
+    public int getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+    public String getReservationId() { return reservationId; }
+
+    public void setProductId(int productId) { this.productId = productId; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+    public void setReservationId(String reservationId) { this.reservationId = reservationId; }
+}
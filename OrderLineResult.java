@@ -0,0 +1,31 @@
+/**
+ * The outcome of one cart line at checkout.
+ */
+public class OrderLineResult {
+    private int productId;
+    private int quantity;
+    private boolean placed;
+    private String orderId; // Set only when the line was placed
+    private String message;
+
+    public OrderLineResult(int productId, int quantity, boolean placed, String orderId, String message) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.placed = placed;
+        this.orderId = orderId;
+        this.message = message;
+    }
+
+    // Getters and Setters
+    public int getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+    public boolean isPlaced() { return placed; }
+    public String getOrderId() { return orderId; }
+    public String getMessage() { return message; }
+
+    public void setProductId(int productId) { this.productId = productId; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+    public void setPlaced(boolean placed) { this.placed = placed; }
+    public void setOrderId(String orderId) { this.orderId = orderId; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,46 @@
+import java.util.List;
+
+/**
+ * Orders that have taken their stock but are not in the order store yet (a transactional
+ * outbox).
+ *
+ * Placing an order takes the stock and records the order in the stock store in one local
+ * transaction, so either both happen or neither does. {@link OutboxRelay} later copies the
+ * recorded orders to the {@link OrderRepository} and removes them from the outbox; the copy is
+ * idempotent, so an order copied twice (e.g. after a crash between the two steps) is stored once.
+ */
+public interface OrderOutbox {
+    /**
+     * Takes the stock of each line and, in the same transaction, records the order of every
+     * line that got its stock. Stock is taken as by {@link ProductRepository#decrementStock}.
+     *
+     * @param lines       the product/quantity lines
+     * @param stockToKeep for each line, the stock that must remain after it
+     * @param orders      the order for each line, at the same positions
+     * @return for each line, true if its stock was taken and its order recorded
+     */
+    boolean[] placeOrders(List<OrderLine> lines, int[] stockToKeep, List<Order> orders) throws StorageException;
+
+    /**
+     * Finds an order that has not been copied to the order store yet.
+     *
+     * @param orderId the unique Order ID
+     * @return Order object if it is waiting in the outbox, else null
+     */
+    Order findById(String orderId) throws StorageException;
+
+    /**
+     * Returns the orders waiting longest, without removing them.
+     *
+     * @param limit the maximum number of orders to return
+     * @return up to limit orders, oldest first
+     */
+    List<Order> peek(int limit) throws StorageException;
+
+    /**
+     * Removes orders that have been copied to the order store.
+     *
+     * @param orders the orders to remove, as returned by {@link #peek(int)}
+     */
+    void remove(List<Order> orders) throws StorageException;
+}
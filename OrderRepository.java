@@ -0,0 +1,49 @@
+import java.util.List;
+
+/**
+ * Storage for customer orders.
+ */
+public interface OrderRepository {
+    /**
+     * Finds an order by its order ID.
+     *
+     * @param orderId the unique Order ID
+     * @return Order object if found, else null
+     */
+    Order findById(String orderId) throws StorageException;
+
+    /**
+     * Retrieves all Orders for a specific user.
+     *
+     * @param userId the user ID
+     * @return list of Order objects
+     */
+    List<Order> findByUserId(int userId) throws StorageException;
+
+    /**
+     * Retrieves one page of a user's order history, newest first: the orders that come after
+     * the cursor in the order described by {@link OrderCursor}.
+     *
+     * @param userId the user ID
+     * @param after  the position the page starts after, or null for the first page
+     * @param limit  the maximum number of orders to return
+     * @return list of Order objects, newest first
+     */
+    List<Order> findByUserId(int userId, OrderCursor after, int limit) throws StorageException;
+
+    /**
+     * Stores new Orders in one round trip.
+     *
+     * @param orders the orders to store
+     */
+    void insertAll(List<Order> orders) throws StorageException;
+
+    /**
+     * Stores the orders that are not stored yet, matched by order ID, in one round trip.
+     * Storing the same orders again changes nothing, so a failed attempt can simply be retried.
+     *
+     * @param orders the orders to store
+     * @return the orders that were newly stored
+     */
+    List<Order> upsertAll(List<Order> orders) throws StorageException;
+}
@@ -0,0 +1,141 @@
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Copies orders from the {@link OrderOutbox} to the {@link OrderRepository} in the background.
+ *
+ * A pass takes the oldest orders in batches of up to -Dorder.outbox.batchSize (default 500),
+ * upserts each batch into the order store with one bulk write, adds the newly stored orders to
+ * the sales rollups and removes the batch from the outbox, until the outbox is empty. Passes
+ * run on one thread: right after a checkout (see {@link #wake()}), so orders reach the order
+ * store within milliseconds, and every -Dorder.outbox.relayMs (default 1000) to retry after a
+ * failure. A batch retried after a crash or a failed delete is neither stored twice, since the
+ * upsert matches on order ID, nor counted twice, since only newly stored orders are added to
+ * the rollups.
+ *
+ * Every process that uses DataStore runs a relay, so the outbox drains even when only the
+ * desktop clients are placing orders; relays racing for the same batch are harmless.
+ */
+public class OutboxRelay {
+    private static final int BATCH_SIZE = Integer.getInteger("order.outbox.batchSize", 500);
+    private static final long RELAY_INTERVAL_MS = Long.getLong("order.outbox.relayMs", 1000L);
+
+    private final OrderOutbox outbox;
+    private final OrderRepository orders;
+    private final SalesRepository sales;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean wakeQueued = new AtomicBoolean();
+
+    private final LongAdder relayedCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    // Order date of the oldest order seen waiting by the last pass, 0 if there was none
+    private volatile long oldestPendingMillis = 0;
+
+    public OutboxRelay(OrderOutbox outbox, OrderRepository orders, SalesRepository sales) {
+        this.outbox = outbox;
+        this.orders = orders;
+        this.sales = sales;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "order-outbox-relay");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts the periodic passes, beginning with one right away for orders left over from an
+     * earlier run, and exposes the relay's counters at /metrics.
+     */
+    public void start() {
+        executor.scheduleWithFixedDelay(this::relayQuietly, 0, RELAY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Metrics.counter("order_outbox_relayed_total", "Orders copied from the outbox to the order store.",
+                relayedCount::sum);
+        Metrics.counter("order_outbox_failures_total", "Outbox relay passes that failed and will be retried.",
+                failureCount::sum);
+        Metrics.gauge("order_outbox_lag_seconds", "Age of the oldest order still waiting in the outbox.",
+                () -> {
+                    long oldest = oldestPendingMillis;
+                    return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest) / 1000.0;
+                });
+    }
+
+    /**
+     * Asks for a pass soon, e.g. after orders were placed. Requests made while one is already
+     * queued are folded into it, so a burst of checkouts is relayed in batches.
+     */
+    public void wake() {
+        if (!wakeQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                wakeQueued.set(false);
+                relayQuietly();
+            });
+        } catch (RejectedExecutionException e) {
+            wakeQueued.set(false); // Stopped; the final pass in stop() covers these orders
+        }
+    }
+
+    /**
+     * Stops the relay after one last pass, so orders placed just before shutdown are not left
+     * waiting for the next start.
+     */
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        relayQuietly();
+    }
+
+    private void relayQuietly() {
+        try {
+            relay();
+        } catch (StorageException | RuntimeException e) {
+            failureCount.increment();
+            Log.error("Error relaying orders from the outbox; will retry.", e);
+        }
+    }
+
+    /**
+     * Copies every waiting order to the order store.
+     *
+     * @return the number of orders removed from the outbox
+     * @throws StorageException if reading the outbox or writing the order store fails; the
+     *                          orders stay in the outbox and are retried by the next pass
+     */
+    synchronized int relay() throws StorageException {
+        int total = 0;
+        while (true) {
+            List<Order> batch = outbox.peek(BATCH_SIZE);
+            oldestPendingMillis = batch.isEmpty() ? 0 : batch.get(0).getOrderDate().getTime();
+            if (batch.isEmpty()) {
+                return total;
+            }
+            List<Order> inserted = orders.upsertAll(batch);
+            if (!inserted.isEmpty()) {
+                try {
+                    sales.record(inserted);
+                } catch (StorageException e) {
+                    // Not retried, or a retry would count the orders twice; rebuildSalesRollups() repairs it
+                    Log.error("Error updating sales rollups.", e, "orders", inserted.size());
+                }
+            }
+            outbox.remove(batch);
+            relayedCount.add(batch.size());
+            total += batch.size();
+            if (batch.size() < BATCH_SIZE) {
+                oldestPendingMillis = 0;
+                return total;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing: up to a limit of items plus the cursor that fetches
+ * the next page.
+ *
+ * Cursors point just past the last item of a page (a product_id for products, see
+ * {@link OrderCursor} for orders) rather than at a row offset, so fetching a page costs the
+ * same however deep into the listing it is, and items added or removed on earlier pages do not
+ * shift later ones. Callers should treat cursors as opaque strings.
+ *
+ * @param <T> the item type
+ */
+public class Page<T> {
+    // Largest page a caller may ask for
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+    private final String nextCursor; // Null on the last page
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean hasNext() { return nextCursor != null; }
+
+    // ----------------------------
+    // Product Cursors
+    // ----------------------------
+
+    /**
+     * Returns the cursor of the page that follows the given product.
+     *
+     * @param last the last product of the current page
+     * @return the next-page cursor
+     */
+    public static String productCursor(Product last) {
+        return Integer.toString(last.getProductId());
+    }
+
+    /**
+     * Decodes a product cursor.
+     *
+     * @param cursor a cursor from {@link #productCursor}, or null for the first page
+     * @return the product ID the page starts after, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static Integer parseProductCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Keeps a requested page size within 1 to {@link #MAX_LIMIT}.
+     *
+     * @param limit the requested page size
+     * @return the page size to use
+     */
+    public static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.IOException;
+
+/**
+ * Passes at most one page of products on to another sink and works out the next-page cursor.
+ *
+ * Ask the store for one product more than the page size: that product is not passed on, it
+ * only shows that another page follows.
+ */
+public class PagedProductSink implements ProductSink {
+    private final ProductSink delegate;
+    private final int limit;
+    private int passed = 0;
+    private Product last = null;
+    private boolean hasMore = false;
+
+    /**
+     * @param delegate receives the products of the page
+     * @param limit    the page size; Integer.MAX_VALUE for no paging
+     */
+    public PagedProductSink(ProductSink delegate, int limit) {
+        this.delegate = delegate;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns how many products to ask the store for: the page size plus one.
+     *
+     * @return the fetch size
+     */
+    public int getFetchSize() {
+        return limit == Integer.MAX_VALUE ? limit : limit + 1;
+    }
+
+    @Override
+    public void accept(Product product) throws IOException {
+        if (passed >= limit) {
+            hasMore = true;
+            return;
+        }
+        passed++;
+        last = product;
+        delegate.accept(product);
+    }
+
+    /**
+     * Returns the cursor of the next page, once the store has passed every product.
+     *
+     * @return the next-page cursor, or null if this was the last page
+     */
+    public String getNextCursor() {
+        return hasMore ? Page.productCursor(last) : null;
+    }
+}
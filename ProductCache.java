@@ -0,0 +1,231 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded read-through cache of products by id, in front of single-product lookups.
+ *
+ * Entries are spread over a fixed set of segments, each a small access-ordered LinkedHashMap
+ * under its own lock, so the least recently used product in a segment is evicted once the
+ * segment is full and lookups of different products rarely contend. Entries also expire after
+ * a time-to-live, which bounds how stale a product changed by another process can get.
+ *
+ * Writes made through this process must call {@link #invalidate(int)}. A load that started
+ * before an invalidation of the same segment is not cached, so a slow read can never put back
+ * a value older than the write that invalidated it. Products are stored and returned as
+ * copies, so callers may modify them freely.
+ */
+public class ProductCache {
+    private static final int SEGMENTS = 16;
+
+    /**
+     * Loads a product on a cache miss.
+     */
+    public interface Loader {
+        Product load(int productId) throws StorageException;
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxSize the maximum number of cached products; 0 disables caching
+     * @param ttlMs   how long a cached product may be served, in milliseconds
+     */
+    public ProductCache(int maxSize, long ttlMs) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = ttlMs * 1_000_000L;
+        int perSegment = (this.maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Returns a product from the cache, loading and caching it on a miss. Products that do not
+     * exist are not cached.
+     *
+     * @param productId the product ID
+     * @param loader    reads the product from the backend
+     * @return a copy of the product, or null if it does not exist
+     * @throws StorageException if the loader fails
+     */
+    public Product get(int productId, Loader loader) throws StorageException {
+        if (maxSize == 0) {
+            return loader.load(productId);
+        }
+        Segment segment = segmentFor(productId);
+        long generation;
+        synchronized (segment) {
+            Entry entry = segment.entries.get(productId);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    return copyOf(entry.product);
+                }
+                segment.entries.remove(productId);
+                expirations.incrementAndGet();
+            }
+            generation = segment.generation;
+        }
+
+        misses.incrementAndGet();
+        Product product = loader.load(productId);
+        if (product == null) {
+            return null;
+        }
+        Entry loaded = new Entry(copyOf(product), System.nanoTime());
+        synchronized (segment) {
+            // Skip the fill if a write invalidated this segment while we were loading
+            if (segment.generation == generation) {
+                segment.entries.put(productId, loaded);
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Drops a product from the cache. Call after any write to it, including stock changes.
+     *
+     * @param productId the product ID
+     */
+    public void invalidate(int productId) {
+        if (maxSize == 0) {
+            return;
+        }
+        Segment segment = segmentFor(productId);
+        synchronized (segment) {
+            segment.generation++;
+            if (segment.entries.remove(productId) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drops every product from the cache.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.entries.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached products, including any that have expired but not yet been
+     * looked up again.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns a snapshot of the cache counters.
+     *
+     * @return CacheStats snapshot
+     */
+    public CacheStats getStats() {
+        return new CacheStats(maxSize, size(), hits.get(), misses.get(), evictions.get(),
+                expirations.get(), invalidations.get());
+    }
+
+    private Segment segmentFor(int productId) {
+        int h = productId * 0x9E3779B9;
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static Product copyOf(Product p) {
+        return new Product(p.getProductId(), p.getName(), p.getDescription(), p.getPrice(), p.getStock());
+    }
+
+    private class Segment {
+        // Bumped by every invalidation, so in-flight loads can tell they may be stale
+        private long generation;
+        private final LinkedHashMap<Integer, Entry> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    private static class Entry {
+        private final Product product;
+        private final long loadedAt;
+
+        Entry(Product product, long loadedAt) {
+            this.product = product;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Point-in-time cache counters.
+     */
+    public static class CacheStats {
+        private final int maxSize;
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+
+        public CacheStats(int maxSize, int size, long hits, long misses, long evictions, long expirations,
+                          long invalidations) {
+            this.maxSize = maxSize;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+        }
+
+        public int getMaxSize() { return maxSize; }
+        public int getSize() { return size; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public long getInvalidations() { return invalidations; }
+
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "size=" + size + "/" + maxSize + ", hits=" + hits + ", misses=" + misses
+                    + ", hitRatio=" + String.format("%.3f", getHitRatio()) + ", evictions=" + evictions
+                    + ", expirations=" + expirations + ", invalidations=" + invalidations;
+        }
+    }
+}
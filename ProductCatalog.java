@@ -0,0 +1,554 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of the products table, indexed for the /search filters.
+ *
+ * - products are held in an {@link IntObjectMap} keyed by product_id
+ * - names are indexed by trigram (3-character substrings), so "name contains x" only has to
+ *   verify the products sharing every trigram of x instead of scanning the whole table
+ * - prices are kept in a sorted array, so price_lt / price_gt are binary searches
+ * - ids are kept in a bitset, so an unfiltered listing can start at any id (keyset paging)
+ *
+ * Matching follows the MySQL query it replaces: case-insensitive substring match on name,
+ * strict price bounds, results ordered by product_id. Products returned are copies, so callers
+ * may modify them freely.
+ *
+ * DataStore keeps the catalog current for writes made through this process; a periodic
+ * reload picks up writes made by other processes (e.g. the Swing clients).
+ */
+public class ProductCatalog {
+    private static final int STREAM_BATCH_SIZE = 256;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private IntObjectMap<Product> products = new IntObjectMap<>();
+    private IntObjectMap<String> lowerCaseNames = new IntObjectMap<>();
+    // Ids of all products, for walking the catalog in id order
+    private BitSet allIds = new BitSet();
+    // Trigram -> ids of products whose name contains it
+    private Map<Long, BitSet> trigramIndex = new HashMap<>();
+    // Product ids ordered by (price, id), with the matching prices alongside
+    private int[] idsByPrice = new int[0];
+    private double[] sortedPrices = new double[0];
+
+    private volatile boolean loaded = false;
+    private ScheduledExecutorService refresher;
+
+    // ----------------------------
+    // Loading
+    // ----------------------------
+
+    /**
+     * Replaces the catalog contents. The new indexes are built before the lock is taken, so
+     * searches are only blocked for the swap.
+     *
+     * @param allProducts every product in the store
+     */
+    public void load(List<Product> allProducts) {
+        IntObjectMap<Product> newProducts = new IntObjectMap<>(allProducts.size());
+        IntObjectMap<String> newNames = new IntObjectMap<>(allProducts.size());
+        Map<Long, BitSet> newTrigrams = new HashMap<>();
+        BitSet newIds = new BitSet();
+        for (Product p : allProducts) {
+            Product copy = copyOf(p);
+            newProducts.put(copy.getProductId(), copy);
+            newIds.set(copy.getProductId());
+            String lowerName = lowerCase(copy.getName());
+            newNames.put(copy.getProductId(), lowerName);
+            for (long trigram : trigrams(lowerName)) {
+                newTrigrams.computeIfAbsent(trigram, k -> new BitSet()).set(copy.getProductId());
+            }
+        }
+
+        List<Product> byPrice = new ArrayList<>(newProducts.values());
+        byPrice.sort((a, b) -> comparePriceOrder(a.getPrice(), a.getProductId(), b.getPrice(), b.getProductId()));
+        int[] newIdsByPrice = new int[byPrice.size()];
+        double[] newPrices = new double[byPrice.size()];
+        for (int i = 0; i < byPrice.size(); i++) {
+            newIdsByPrice[i] = byPrice.get(i).getProductId();
+            newPrices[i] = byPrice.get(i).getPrice();
+        }
+
+        lock.writeLock().lock();
+        try {
+            products = newProducts;
+            lowerCaseNames = newNames;
+            allIds = newIds;
+            trigramIndex = newTrigrams;
+            idsByPrice = newIdsByPrice;
+            sortedPrices = newPrices;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Reloads the catalog periodically in the background.
+     *
+     * @param loader   returns every product from the backing store
+     * @param periodMs the reload interval in milliseconds
+     */
+    public synchronized void startPeriodicReload(Callable<List<Product>> loader, long periodMs) {
+        if (refresher != null || periodMs <= 0) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "product-catalog-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                load(loader.call());
+            } catch (Exception e) {
+                Log.warn("Error reloading product catalog.", "error", e.getMessage());
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopPeriodicReload() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    // ----------------------------
+    // Queries
+    // ----------------------------
+
+    /**
+     * Returns a copy of the product with the given id.
+     *
+     * @param productId the product ID
+     * @return Product copy if present, else null
+     */
+    public Product get(int productId) {
+        lock.readLock().lock();
+        try {
+            Product p = products.get(productId);
+            return p != null ? copyOf(p) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the catalog using the same optional filters as DataStore.searchProducts.
+     *
+     * @param productId        the product ID to search for (optional)
+     * @param name             the product name keyword to search for (optional)
+     * @param priceLessThan    the maximum price, exclusive (optional)
+     * @param priceGreaterThan the minimum price, exclusive (optional)
+     * @return matching products ordered by product_id
+     */
+    public List<Product> search(Integer productId, String name, Double priceLessThan, Double priceGreaterThan) {
+        return search(productId, name, priceLessThan, priceGreaterThan, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns one page of a search: the first {@code limit} matches with a product_id greater
+     * than {@code afterProductId}. Candidates are checked in id order from the cursor on and the
+     * scan stops once the page is full, so a page does not cost more the deeper it is.
+     *
+     * @param productId        the product ID to search for (optional)
+     * @param name             the product name keyword to search for (optional)
+     * @param priceLessThan    the maximum price, exclusive (optional)
+     * @param priceGreaterThan the minimum price, exclusive (optional)
+     * @param afterProductId   return only products with a greater ID (optional)
+     * @param limit            the maximum number of products to return
+     * @return matching products ordered by product_id
+     */
+    public List<Product> search(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                                Integer afterProductId, int limit) {
+        String keyword = (name != null) ? lowerCase(name.trim()) : "";
+        List<Product> results = new ArrayList<>();
+        int from = firstId(afterProductId);
+        if (from < 0) {
+            return results;
+        }
+
+        lock.readLock().lock();
+        try {
+            BitSet candidates = candidateIds(productId, keyword, priceLessThan, priceGreaterThan);
+            BitSet ids = candidates != null ? candidates : allIds;
+            for (int id = ids.nextSetBit(from); id >= 0 && results.size() < limit; id = nextId(ids, id)) {
+                Product p = products.get(id);
+                if (p != null && matches(p, keyword, priceLessThan, priceGreaterThan)) {
+                    results.add(copyOf(p));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the same search as {@link #search}, handing each match to the sink in product_id
+     * order. At most one bit per product id is held for the whole search; candidates are
+     * checked and copied {@value #STREAM_BATCH_SIZE} at a time and the lock is released while
+     * the sink runs, so a slow sink never blocks catalog writes. A product changed or removed
+     * mid-search is re-checked, not returned stale.
+     *
+     * @param productId        the product ID to search for (optional)
+     * @param name             the product name keyword to search for (optional)
+     * @param priceLessThan    the maximum price, exclusive (optional)
+     * @param priceGreaterThan the minimum price, exclusive (optional)
+     * @param afterProductId   pass only products with a greater ID (optional)
+     * @param limit            the maximum number of products to pass
+     * @param sink             receives the matching products
+     * @throws IOException if the sink fails; the search stops there
+     */
+    public void searchInto(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                           Integer afterProductId, int limit, ProductSink sink) throws IOException {
+        String keyword = (name != null) ? lowerCase(name.trim()) : "";
+        int next = firstId(afterProductId);
+        if (next < 0) {
+            return;
+        }
+        BitSet candidates;
+        lock.readLock().lock();
+        try {
+            candidates = candidateIds(productId, keyword, priceLessThan, priceGreaterThan);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Product[] batch = new Product[STREAM_BATCH_SIZE];
+        int remaining = limit;
+        while (next >= 0 && remaining > 0) {
+            int count = 0;
+            lock.readLock().lock();
+            try {
+                // Without a narrower candidate set, walk the live id index (it may be swapped by a reload)
+                BitSet ids = candidates != null ? candidates : allIds;
+                next = ids.nextSetBit(next);
+                while (next >= 0 && count < batch.length && count < remaining) {
+                    Product p = products.get(next);
+                    if (p != null && matches(p, keyword, priceLessThan, priceGreaterThan)) {
+                        batch[count++] = copyOf(p);
+                    }
+                    next = nextId(ids, next);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            remaining -= count;
+            for (int i = 0; i < count; i++) {
+                sink.accept(batch[i]);
+                batch[i] = null;
+            }
+        }
+    }
+
+    /**
+     * The first id a page may contain, or -1 if no id can follow the cursor.
+     */
+    private static int firstId(Integer afterProductId) {
+        if (afterProductId == null || afterProductId < 0) {
+            return 0;
+        }
+        return afterProductId == Integer.MAX_VALUE ? -1 : afterProductId + 1;
+    }
+
+    private static int nextId(BitSet ids, int id) {
+        return id == Integer.MAX_VALUE ? -1 : ids.nextSetBit(id + 1);
+    }
+
+    /**
+     * Narrows the search to the products an index can pick out: the given product ID, the
+     * products sharing every trigram of the keyword, or those in the price range. Candidates
+     * still have to be checked with {@link #matches}. Must be called under the lock.
+     *
+     * @return the candidate ids, or null if no index applies and every product is a candidate
+     */
+    private BitSet candidateIds(Integer productId, String keyword, Double priceLessThan, Double priceGreaterThan) {
+        BitSet candidates = new BitSet();
+        if (productId != null) {
+            if (productId >= 0) {
+                candidates.set(productId);
+            }
+            return candidates;
+        }
+        if (keyword.length() >= 3) {
+            // Price bounds are checked per candidate; the trigram hits are usually far fewer
+            return nameCandidates(keyword);
+        }
+        if (priceLessThan != null || priceGreaterThan != null) {
+            return priceRange(priceLessThan, priceGreaterThan);
+        }
+        return null;
+    }
+
+    private boolean matches(Product p, String keyword, Double priceLessThan, Double priceGreaterThan) {
+        return lowerCaseNames.get(p.getProductId()).contains(keyword)
+                && (priceLessThan == null || p.getPrice() < priceLessThan)
+                && (priceGreaterThan == null || p.getPrice() > priceGreaterThan);
+    }
+
+    /**
+     * Intersects the posting sets of every trigram in the keyword.
+     */
+    private BitSet nameCandidates(String keyword) {
+        BitSet result = null;
+        for (long trigram : trigrams(keyword)) {
+            BitSet postings = trigramIndex.get(trigram);
+            if (postings == null) {
+                return new BitSet();
+            }
+            if (result == null) {
+                result = (BitSet) postings.clone();
+            } else {
+                result.and(postings);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collects the ids whose price lies strictly between the given bounds.
+     */
+    private BitSet priceRange(Double priceLessThan, Double priceGreaterThan) {
+        int from = 0;
+        int to = sortedPrices.length;
+        if (priceGreaterThan != null) {
+            from = upperBound(sortedPrices, priceGreaterThan);
+        }
+        if (priceLessThan != null) {
+            to = lowerBound(sortedPrices, priceLessThan);
+        }
+        BitSet result = new BitSet();
+        for (int i = from; i < to; i++) {
+            result.set(idsByPrice[i]);
+        }
+        return result;
+    }
+
+    /** First index whose price is >= value. */
+    private static int lowerBound(double[] prices, double value) {
+        int lo = 0;
+        int hi = prices.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prices[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** First index whose price is > value. */
+    private static int upperBound(double[] prices, double value) {
+        int lo = 0;
+        int hi = prices.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prices[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // ----------------------------
+    // Writes
+    // ----------------------------
+
+    /**
+     * Inserts or replaces a product, updating the name and price indexes.
+     *
+     * @param product the product as stored in the database
+     */
+    public void put(Product product) {
+        Product copy = copyOf(product);
+        int id = copy.getProductId();
+        lock.writeLock().lock();
+        try {
+            Product previous = products.put(id, copy);
+            allIds.set(id);
+            String newName = lowerCase(copy.getName());
+            String oldName = lowerCaseNames.put(id, newName);
+            if (oldName == null || !oldName.equals(newName)) {
+                if (oldName != null) {
+                    unindexName(id, oldName);
+                }
+                for (long trigram : trigrams(newName)) {
+                    trigramIndex.computeIfAbsent(trigram, k -> new BitSet()).set(id);
+                }
+            }
+            if (previous == null || previous.getPrice() != copy.getPrice()) {
+                if (previous != null) {
+                    removeFromPriceIndex(id, previous.getPrice());
+                }
+                addToPriceIndex(id, copy.getPrice());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product from the catalog and its indexes.
+     *
+     * @param productId the product ID
+     */
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            Product previous = products.remove(productId);
+            String oldName = lowerCaseNames.remove(productId);
+            if (productId >= 0) {
+                allIds.clear(productId);
+            }
+            if (previous != null) {
+                unindexName(productId, oldName);
+                removeFromPriceIndex(productId, previous.getPrice());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a (possibly negative) delta to the stock of a product.
+     *
+     * Stock is not indexed, so only the read lock is taken and searches are not blocked.
+     * Callers must serialize changes to the same product; {@link Inventory} does this with its
+     * per-product lock stripes.
+     *
+     * @param productId the product ID
+     * @param delta     the change in stock
+     */
+    public void adjustStock(int productId, int delta) {
+        lock.readLock().lock();
+        try {
+            Product p = products.get(productId);
+            if (p != null) {
+                p.setStock(p.getStock() + delta);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void unindexName(int id, String lowerName) {
+        for (long trigram : trigrams(lowerName)) {
+            BitSet postings = trigramIndex.get(trigram);
+            if (postings != null) {
+                postings.clear(id);
+                if (postings.isEmpty()) {
+                    trigramIndex.remove(trigram);
+                }
+            }
+        }
+    }
+
+    private void addToPriceIndex(int id, double price) {
+        int pos = priceSlot(id, price);
+        int n = idsByPrice.length;
+        int[] ids = new int[n + 1];
+        double[] prices = new double[n + 1];
+        System.arraycopy(idsByPrice, 0, ids, 0, pos);
+        System.arraycopy(sortedPrices, 0, prices, 0, pos);
+        ids[pos] = id;
+        prices[pos] = price;
+        System.arraycopy(idsByPrice, pos, ids, pos + 1, n - pos);
+        System.arraycopy(sortedPrices, pos, prices, pos + 1, n - pos);
+        idsByPrice = ids;
+        sortedPrices = prices;
+    }
+
+    private void removeFromPriceIndex(int id, double price) {
+        int pos = priceSlot(id, price);
+        if (pos >= idsByPrice.length || idsByPrice[pos] != id) {
+            return;
+        }
+        int n = idsByPrice.length;
+        int[] ids = new int[n - 1];
+        double[] prices = new double[n - 1];
+        System.arraycopy(idsByPrice, 0, ids, 0, pos);
+        System.arraycopy(sortedPrices, 0, prices, 0, pos);
+        System.arraycopy(idsByPrice, pos + 1, ids, pos, n - pos - 1);
+        System.arraycopy(sortedPrices, pos + 1, prices, pos, n - pos - 1);
+        idsByPrice = ids;
+        sortedPrices = prices;
+    }
+
+    /** Position of (price, id) in the price index, or where it would be inserted. */
+    private int priceSlot(int id, double price) {
+        int lo = 0;
+        int hi = idsByPrice.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparePriceOrder(sortedPrices[mid], idsByPrice[mid], price, id) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int comparePriceOrder(double priceA, int idA, double priceB, int idB) {
+        int byPrice = Double.compare(priceA, priceB);
+        return byPrice != 0 ? byPrice : Integer.compare(idA, idB);
+    }
+
+    // ----------------------------
+    // Helpers
+    // ----------------------------
+
+    private static String lowerCase(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the distinct trigrams of a string, each packed into a long (3 x 16-bit chars).
+     */
+    private static long[] trigrams(String s) {
+        if (s.length() < 3) {
+            return new long[0];
+        }
+        long[] result = new long[s.length() - 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        Arrays.sort(result);
+        int n = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (n == 0 || result[n - 1] != result[i]) {
+                result[n++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static Product copyOf(Product p) {
+        return new Product(p.getProductId(), p.getName(), p.getDescription(), p.getPrice(), p.getStock());
+    }
+}
@@ -1,17 +1,23 @@
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class ProductHandler implements HttpHandler {
-    private DataStore dataStore;
-    private Gson gson;
+    private final DataService dataStore;
+    private final Gson gson;
 
-    public ProductHandler() {
-        this.dataStore = new DataStore();
-        this.gson = new Gson();
+    public ProductHandler(AppContext context) {
+        this.dataStore = context.getDataStore();
+        this.gson = context.getGson();
     }
 
     @Override
@@ -19,14 +25,21 @@ public class ProductHandler implements HttpHandler {
         String method = exchange.getRequestMethod();
 
         if (!method.equalsIgnoreCase("GET")) {
-            sendResponse(exchange, 405, "Method Not Allowed");
+            HttpResponses.send(exchange, 405, "Method Not Allowed");
             return;
         }
 
         String path = exchange.getRequestURI().getPath();
         String[] pathParts = path.split("/");
+        if (pathParts.length == 2) { // /products?ids=1,2,3
+            String ids = Utils.parseQueryParams(exchange.getRequestURI().getRawQuery()).get("ids");
+            if (ids != null) {
+                handleBatch(exchange, ids);
+                return;
+            }
+        }
         if (pathParts.length != 3) { // Expecting /products/{id}
-            sendResponse(exchange, 400, "Invalid URL format. Use /products/{id}");
+            HttpResponses.send(exchange, 400, "Invalid URL format. Use /products/{id} or /products?ids=1,2,3");
             return;
         }
 
@@ -35,34 +48,71 @@ public class ProductHandler implements HttpHandler {
         try {
             productId = Integer.parseInt(idStr);
         } catch (NumberFormatException e) {
-            sendResponse(exchange, 400, "Invalid product ID.");
+            HttpResponses.send(exchange, 400, "Invalid product ID.");
             return;
         }
 
         Product product = dataStore.findProductById(productId);
         if (product == null) {
-            sendResponse(exchange, 404, "Product not found.");
+            HttpResponses.send(exchange, 404, "Product not found.");
+            return;
+        }
+
+        // Products have no modification time, so only the ETag validates them
+        if (ConditionalGet.sendNotModifiedIfCurrent(exchange, ConditionalGet.etag(product), null, "no-cache")) {
             return;
         }
 
         String jsonResponse = gson.toJson(product);
         exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
-        sendResponse(exchange, 200, jsonResponse);
+        HttpResponses.send(exchange, 200, jsonResponse);
     }
 
     /**
-     * Sends an HTTP response with the given status code and body.
+     * Returns many products in one request: a JSON array of the products that exist, in the
+     * order their ids were given, looked up with a single DataStore query and streamed out.
      *
-     * @param exchange   the HttpExchange object
-     * @param statusCode the HTTP status code
-     * @param response   the response body
-     * @throws IOException
+     * @param exchange the HttpExchange object
+     * @param idsParam comma-separated product IDs, at most {@link Page#MAX_LIMIT}
+     * @throws IOException if the response cannot be written
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        byte[] bytes = response.getBytes("UTF-8");
-        exchange.sendResponseHeaders(statusCode, bytes.length);
-        OutputStream os = exchange.getResponseBody();
-        os.write(bytes);
-        os.close();
+    private void handleBatch(HttpExchange exchange, String idsParam) throws IOException {
+        Set<Integer> productIds = new LinkedHashSet<>();
+        for (String idStr : idsParam.split(",")) {
+            if (idStr.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                productIds.add(Integer.parseInt(idStr.trim()));
+            } catch (NumberFormatException e) {
+                HttpResponses.send(exchange, 400, "Invalid product ID: " + idStr.trim());
+                return;
+            }
+        }
+        if (productIds.isEmpty()) {
+            HttpResponses.send(exchange, 400, "The ids parameter must list at least one product ID.");
+            return;
+        }
+        if (productIds.size() > Page.MAX_LIMIT) {
+            HttpResponses.send(exchange, 400, "At most " + Page.MAX_LIMIT + " product IDs per request.");
+            return;
+        }
+
+        Map<Integer, Product> products = dataStore.findProductsByIds(productIds);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        try (Writer out = new OutputStreamWriter(HttpResponses.stream(exchange, 200), StandardCharsets.UTF_8)) {
+            JsonWriter json = new JsonWriter(out);
+            json.beginArray();
+            ProductJsonWriter writer = new ProductJsonWriter(json, gson);
+            for (int productId : productIds) {
+                Product product = products.get(productId);
+                if (product != null) {
+                    writer.accept(product);
+                }
+            }
+            json.endArray();
+            json.flush();
+        }
     }
 }
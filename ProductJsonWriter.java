@@ -0,0 +1,34 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes products as elements of a JSON array as they arrive, in the same representation as
+ * /products/{id}. The caller opens and closes the array, so it can sit inside a larger
+ * document.
+ */
+public class ProductJsonWriter implements ProductSink {
+    private final JsonWriter json;
+    private final Gson gson;
+
+    /**
+     * @param json the writer, positioned inside an open array
+     * @param gson serializes each product
+     */
+    public ProductJsonWriter(JsonWriter json, Gson gson) {
+        this.json = json;
+        this.gson = gson;
+    }
+
+    @Override
+    public void accept(Product product) throws IOException {
+        try {
+            gson.toJson(product, Product.class, json);
+        } catch (JsonIOException e) {
+            // Gson wraps the writer's IOException; unwrap it so the search stops like any sink failure
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+        }
+    }
+}
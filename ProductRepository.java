@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage for products and their stock. Products returned are never shared with the store,
+ * so callers may modify them freely.
+ */
+public interface ProductRepository {
+    /**
+     * Finds a Product by productId.
+     *
+     * @param productId the product ID
+     * @return Product object if found, else null
+     */
+    Product findById(int productId) throws StorageException;
+
+    /**
+     * Finds many Products in one round trip.
+     *
+     * @param productIds the product IDs
+     * @return map of product ID to Product for the ids that exist
+     */
+    Map<Integer, Product> findByIds(Collection<Integer> productIds) throws StorageException;
+
+    /**
+     * Retrieves all products.
+     *
+     * @return list of all Product objects
+     */
+    List<Product> findAll() throws StorageException;
+
+    /**
+     * Searches for products based on optional search parameters, one page at a time: results
+     * are ordered by product ID and start after the given ID (keyset pagination), so a page
+     * costs the same however far into the results it is.
+     *
+     * @param productId        the product ID to search for (optional)
+     * @param name             the product name keyword to search for (optional)
+     * @param priceLessThan    the maximum price (optional)
+     * @param priceGreaterThan the minimum price (optional)
+     * @param afterProductId   return only products with a greater ID (optional, null for the first page)
+     * @param limit            the maximum number of products to return; Integer.MAX_VALUE for all
+     * @return list of matching Product objects
+     */
+    List<Product> search(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                         Integer afterProductId, int limit) throws StorageException;
+
+    /**
+     * Runs the same search as {@link #search}, handing each match to the sink as it is read,
+     * ordered by product ID, so memory use does not grow with the number of results.
+     *
+     * @param productId        the product ID to search for (optional)
+     * @param name             the product name keyword to search for (optional)
+     * @param priceLessThan    the maximum price (optional)
+     * @param priceGreaterThan the minimum price (optional)
+     * @param afterProductId   pass only products with a greater ID (optional, null for the first page)
+     * @param limit            the maximum number of products to pass; Integer.MAX_VALUE for all
+     * @param sink             receives the matching products
+     * @throws IOException if the sink fails; the search stops there
+     */
+    void searchInto(Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                    Integer afterProductId, int limit, ProductSink sink) throws StorageException, IOException;
+
+    /**
+     * Adds a new Product.
+     *
+     * @param product the Product object to add
+     * @return the generated product ID
+     */
+    int add(Product product) throws StorageException;
+
+    /**
+     * Updates an existing Product.
+     *
+     * @param product the Product object with updated details
+     * @return true if the product existed, else false
+     */
+    boolean update(Product product) throws StorageException;
+
+    /**
+     * Deletes a Product.
+     *
+     * @param productId the product ID to delete
+     * @return true if the product existed, else false
+     */
+    boolean delete(int productId) throws StorageException;
+
+    /**
+     * Takes stock for every line in one atomic unit of work. Each line succeeds only if enough
+     * stock is available when it is applied, leaving at least its stock to keep; lines are
+     * otherwise independent.
+     *
+     * @param lines       the product/quantity lines
+     * @param stockToKeep for each line, the stock that must remain after it (see
+     *                    {@link StockReservations#stockToKeep})
+     * @return for each line, true if its stock was decremented
+     */
+    boolean[] decrementStock(List<OrderLine> lines, int[] stockToKeep) throws StorageException;
+
+    /**
+     * Gives stock back for the selected lines.
+     *
+     * @param lines    the product/quantity lines
+     * @param selected which lines to give back
+     */
+    void incrementStock(List<OrderLine> lines, boolean[] selected) throws StorageException;
+}
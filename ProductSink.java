@@ -0,0 +1,13 @@
+import java.io.IOException;
+
+/**
+ * Receives products one at a time, so a result set can be written out as it is read instead
+ * of being collected into a list first.
+ */
+public interface ProductSink {
+    /**
+     * @param product the next product; the sink may keep or modify it
+     * @throws IOException if the sink cannot write the product (e.g. the client went away)
+     */
+    void accept(Product product) throws IOException;
+}
@@ -0,0 +1,34 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage for stock refill orders.
+ */
+public interface RefillOrderRepository {
+    /**
+     * Creates a new pending Refill Order.
+     *
+     * @param productId the product ID to refill
+     * @param quantity  the quantity to reorder
+     */
+    void create(int productId, int quantity) throws StorageException;
+
+    /**
+     * Creates several pending Refill Orders at once on behalf of the low-stock monitor. A
+     * product that already has a pending automatic Refill Order, e.g. one placed moments ago by
+     * another process's monitor, is skipped.
+     *
+     * @param refills the product/quantity lines to reorder
+     * @return the number of Refill Orders created
+     */
+    int createAll(List<OrderLine> refills) throws StorageException;
+
+    /**
+     * Finds which of the given products already have a pending Refill Order.
+     *
+     * @param productIds the product IDs to check
+     * @return the IDs among them with a pending Refill Order
+     */
+    Set<Integer> findPendingProductIds(Collection<Integer> productIds) throws StorageException;
+}
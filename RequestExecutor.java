@@ -0,0 +1,143 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor used by the HTTP server to run exchanges.
+ *
+ * Two modes are supported:
+ * - virtual: one virtual thread per exchange (JDK 21 or later)
+ * - fixed:   a fixed number of platform threads in front of a bounded queue
+ *
+ * When the fixed pool and its queue are full the exchange is handed to a small pool of its own
+ * with a "rejected" mark, and {@link AdmissionFilter} answers it with 503 without invoking the
+ * handler or reading the request body. The HTTP server's dispatcher thread never runs an
+ * exchange itself, so a saturated server keeps accepting connections. If even the rejection
+ * pool is full, execute throws and the server closes the connection unanswered.
+ */
+public class RequestExecutor implements Executor {
+    private static final ThreadLocal<Boolean> REJECTED = new ThreadLocal<>();
+
+    private static final int REJECTION_THREADS = 2;
+    private static final int REJECTION_QUEUE_CAPACITY = 1000;
+
+    private final String mode;
+    private final ExecutorService delegate;
+    private final ExecutorService rejections; // Null when the delegate never rejects
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private RequestExecutor(String mode, ExecutorService delegate, ExecutorService rejections) {
+        this.mode = mode;
+        this.delegate = delegate;
+        this.rejections = rejections;
+    }
+
+    /**
+     * Creates an executor that runs every exchange on its own virtual thread.
+     *
+     * @return RequestExecutor in virtual mode
+     * @throws IllegalStateException if the JVM has no virtual threads
+     */
+    public static RequestExecutor virtualThreads() {
+        try {
+            // Looked up reflectively so the server still builds and runs on JDK 17
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new RequestExecutor("virtual", (ExecutorService) factory.invoke(null), null);
+        } catch (ReflectiveOperationException e) {
+            // Not a silent unbounded platform-thread pool instead
+            throw new IllegalStateException("Virtual threads need JDK 21 or later; run with "
+                    + "-Dserver.executor=fixed on this JVM.", e);
+        }
+    }
+
+    /**
+     * Creates an executor with a fixed number of threads and a bounded queue.
+     *
+     * @param threads       the number of worker threads
+     * @param queueCapacity the number of exchanges that may wait for a worker
+     * @return RequestExecutor in fixed mode
+     */
+    public static RequestExecutor fixed(int threads, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), namedThreads("http-worker-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        ThreadPoolExecutor rejections = new ThreadPoolExecutor(REJECTION_THREADS, REJECTION_THREADS, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(REJECTION_QUEUE_CAPACITY),
+                namedThreads("http-reject-"), new ThreadPoolExecutor.AbortPolicy());
+        return new RequestExecutor("fixed", pool, rejections);
+    }
+
+    private static java.util.concurrent.ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @Override
+    public void execute(Runnable exchange) {
+        try {
+            delegate.execute(exchange);
+        } catch (RejectedExecutionException e) {
+            if (delegate.isShutdown()) {
+                throw e;
+            }
+            rejectedCount.incrementAndGet();
+            // Thrown on if the rejection pool is full too; the server then closes the connection
+            rejections.execute(() -> {
+                REJECTED.set(Boolean.TRUE);
+                try {
+                    exchange.run();
+                } finally {
+                    REJECTED.remove();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns true when the current exchange was rejected because the server is saturated.
+     *
+     * @return true if the exchange must be answered with 503
+     */
+    public static boolean isRejected() {
+        return REJECTED.get() != null;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Stops accepting exchanges and waits for running ones to finish.
+     *
+     * @param timeoutSeconds how long to wait for in-flight exchanges
+     */
+    public void shutdown(long timeoutSeconds) {
+        if (rejections != null) {
+            rejections.shutdown();
+        }
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,48 +1,101 @@
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.concurrent.Executors;
 
 public class RetailStoreServer {
     public static void main(String[] args) {
         try {
+            // Write responses at once: with Nagle's algorithm on, the body waits for the client to
+            // ACK the headers, which it delays by ~40 ms. -Dsun.net.httpserver.nodelay=false turns it back on.
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+
             // Define the server port
             int port = 8000;
             HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
 
+            // Execution mode: -Dserver.executor=fixed (default) or virtual
+            String executorMode = System.getProperty("server.executor", "fixed");
+            int threads = Integer.getInteger("server.threads", 10);
+            int queueCapacity = Integer.getInteger("server.queueCapacity", 100);
+            boolean virtual = executorMode.equalsIgnoreCase("virtual");
+            // Cap on concurrently running handlers (0 = unlimited); virtual threads are not a
+            // bound of their own, so that mode gets one unless set explicitly
+            int maxConcurrency = Integer.getInteger("server.maxConcurrency", virtual ? 200 : 0);
+            long admissionWaitMs = Long.getLong("server.admissionWaitMs", 100L);
+
+            RequestExecutor executor = virtual
+                    ? RequestExecutor.virtualThreads()
+                    : RequestExecutor.fixed(threads, queueCapacity);
+            AdmissionFilter admissionFilter = new AdmissionFilter(maxConcurrency, admissionWaitMs);
+            Metrics.counter("http_executor_rejected_total", "Exchanges the executor could not queue.",
+                    executor::getRejectedCount);
+            Metrics.counter("http_admission_shed_total", "Exchanges answered 503 by admission control.",
+                    admissionFilter::getShedCount);
+
+            // Open the shared resources before taking requests; every handler gets the same ones
+            // The default context, so in-process callers of the static DataStore share its backend
+            AppContext context = AppContext.getDefault();
+            context.start();
+
             // Create context for /search endpoint
-            server.createContext("/search", new SearchHandler());
+            createContext(server, "/search", new SearchHandler(context), admissionFilter);
 
             // Create context for /products endpoint
-            server.createContext("/products", new ProductHandler());
+            createContext(server, "/products", new ProductHandler(context), admissionFilter);
 
             // Create context for /users endpoint
-            server.createContext("/users", new UserHandler());
+            createContext(server, "/users", new UserHandler(context), admissionFilter);
 
             // Create context for /orders endpoint
-            server.createContext("/orders", new OrderHandler());
+            createContext(server, "/orders", new OrderHandler(context), admissionFilter);
+
+            // Create context for /metrics (Prometheus text format); not timed or admission-limited,
+            // so it can still be scraped when the server is saturated
+            server.createContext("/metrics", new MetricsHandler());
 
             // Optionally, create context for other endpoints like /register, /sales-report, etc.
 
             // Set executor to handle multiple requests concurrently
-            server.setExecutor(Executors.newFixedThreadPool(10));
+            server.setExecutor(executor);
 
             // Start the server
             server.start();
-            System.out.println("Server started on port " + port);
+            Log.info("Server started.", "port", port, "executor", executor.getMode(),
+                    "maxConcurrency", maxConcurrency > 0 ? maxConcurrency : "unlimited");
 
-            // Add shutdown hook for graceful shutdown
+            // Add shutdown hook for graceful shutdown: stop accepting, drain in-flight requests,
+            // then close the shared resources they were using
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                System.out.println("Shutting down server...");
+                Log.info("Shutting down server.");
                 server.stop(1);
-                DataStore.closeMongoConnection(); // Close MongoDB connection if necessary
-                System.out.println("Server stopped.");
+                executor.shutdown(5);
+                Log.info("Server drained.", "rejected", executor.getRejectedCount(),
+                        "shed", admissionFilter.getShedCount());
+                context.stop(); // Close MongoDB and pooled MySQL connections, if in use
+                Log.info("Server stopped.");
             }));
 
         } catch (IOException e) {
-            System.out.println("Failed to create HTTP server on port " + 8000);
-            e.printStackTrace();
+            Log.error("Failed to create HTTP server.", e, "port", 8000);
         }
     }
+
+    /**
+     * Registers a handler behind its metrics filter and the shared admission filter.
+     *
+     * @param server  the HTTP server
+     * @param path    the context path
+     * @param handler the handler for the context
+     * @param filter  the admission filter
+     */
+    private static void createContext(HttpServer server, String path, HttpHandler handler, AdmissionFilter filter) {
+        HttpContext context = server.createContext(path, handler);
+        context.getFilters().add(new MetricsFilter(path));
+        context.getFilters().add(filter);
+    }
 }
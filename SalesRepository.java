@@ -0,0 +1,47 @@
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Pre-aggregated sales per product, maintained as orders are placed.
+ * Totals are returned as SalesData without product names; callers fill those in.
+ */
+public interface SalesRepository {
+    /**
+     * Adds newly placed orders to the totals.
+     *
+     * @param orders the orders that were stored
+     */
+    void record(List<Order> orders) throws StorageException;
+
+    /**
+     * Sums sales per product between two days, inclusive.
+     *
+     * @param firstDay the first day (any time on that day)
+     * @param lastDay  the last day (any time on that day)
+     * @return one SalesData per product sold in the range
+     */
+    List<SalesData> dailyTotals(Date firstDay, Date lastDay) throws StorageException;
+
+    /**
+     * Sums sales per product between two hours, inclusive.
+     *
+     * @param firstHour the first hour (any time within it)
+     * @param lastHour  the last hour (any time within it)
+     * @return one SalesData per product sold in the range
+     */
+    List<SalesData> hourlyTotals(Date firstHour, Date lastHour) throws StorageException;
+
+    /**
+     * Returns true once {@link #rebuild()} has completed against this store. Until then the
+     * totals may be missing orders placed before they were first recorded, even if some have
+     * been recorded since.
+     */
+    boolean isBackfilled() throws StorageException;
+
+    /**
+     * Recomputes the totals from the stored orders and marks the store as backfilled.
+     *
+     * @return the number of orders read
+     */
+    long rebuild() throws StorageException;
+}
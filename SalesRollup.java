@@ -0,0 +1,295 @@
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Pre-aggregated sales per product, in daily and hourly buckets.
+ *
+ * Every placed order adds its quantity and revenue to one document per (bucket, product) with
+ * an upserting $inc, so a sales report over a date range sums at most one document per day and
+ * product instead of scanning every order in the range. Buckets start at midnight / the top of
+ * the hour in the server's time zone, matching the yyyy-MM-dd dates used by reports.
+ *
+ * The rollups are derived data: {@link #rebuild()} recomputes them from the orders collection,
+ * which is how a store with existing orders is backfilled. A completed rebuild leaves a marker
+ * document in {@value #STATE_COLLECTION}, so the backfill is not skipped just because orders
+ * placed since have already written some buckets. Bumping {@link #ROLLUP_VERSION} makes the
+ * next report rebuild rollups written in an older format.
+ */
+public class SalesRollup implements SalesRepository {
+    public static final String DAILY_COLLECTION = "sales_daily";
+    public static final String HOURLY_COLLECTION = "sales_hourly";
+    public static final String STATE_COLLECTION = "sales_rollup_state";
+    private static final String BACKFILL_MARKER_ID = "backfill";
+    private static final int ROLLUP_VERSION = 1;
+    private static final int BULK_BATCH_SIZE = 1000;
+
+    private final MongoDatabase mongoDatabase;
+
+    public SalesRollup(MongoDatabase mongoDatabase) {
+        this.mongoDatabase = mongoDatabase;
+    }
+
+    // ----------------------------
+    // Incremental updates
+    // ----------------------------
+
+    /**
+     * Adds a batch of newly created orders to the rollups.
+     *
+     * Orders for the same product and bucket are combined first, so a cart costs one unordered
+     * bulk write per granularity regardless of its size.
+     *
+     * @param orders the orders as inserted into the orders collection
+     */
+    @Override
+    public void record(List<Order> orders) throws StorageException {
+        try {
+            incrementBuckets(DAILY_COLLECTION, aggregate(orders, Calendar.DAY_OF_MONTH));
+            incrementBuckets(HOURLY_COLLECTION, aggregate(orders, Calendar.HOUR_OF_DAY));
+        } catch (MongoException e) {
+            throw new StorageException("Error updating sales rollups.", e);
+        }
+    }
+
+    private void incrementBuckets(String collectionName, Map<BucketKey, Totals> totals) {
+        if (totals.isEmpty()) {
+            return;
+        }
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        for (Map.Entry<BucketKey, Totals> entry : totals.entrySet()) {
+            BucketKey key = entry.getKey();
+            updates.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("bucket", key.bucket), Filters.eq("product_id", key.productId)),
+                    Updates.combine(Updates.inc("quantity", entry.getValue().quantity),
+                            Updates.inc("revenue", entry.getValue().revenue)),
+                    new UpdateOptions().upsert(true)));
+        }
+        mongoDatabase.getCollection(collectionName).bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    }
+
+    // ----------------------------
+    // Reporting
+    // ----------------------------
+
+    /**
+     * Sums the daily buckets between two days, inclusive.
+     *
+     * @param firstDay the first day (any time on that day)
+     * @param lastDay  the last day (any time on that day)
+     * @return one SalesData per product, without product names
+     */
+    @Override
+    public List<SalesData> dailyTotals(Date firstDay, Date lastDay) throws StorageException {
+        return totals(DAILY_COLLECTION, truncate(firstDay, Calendar.DAY_OF_MONTH), truncate(lastDay, Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * Sums the hourly buckets between two hours, inclusive.
+     *
+     * @param firstHour the first hour (any time within it)
+     * @param lastHour  the last hour (any time within it)
+     * @return one SalesData per product, without product names
+     */
+    @Override
+    public List<SalesData> hourlyTotals(Date firstHour, Date lastHour) throws StorageException {
+        return totals(HOURLY_COLLECTION, truncate(firstHour, Calendar.HOUR_OF_DAY), truncate(lastHour, Calendar.HOUR_OF_DAY));
+    }
+
+    private List<SalesData> totals(String collectionName, Date firstBucket, Date lastBucket) throws StorageException {
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("bucket", new Document("$gte", firstBucket).append("$lte", lastBucket))),
+                new Document("$group", new Document("_id", "$product_id")
+                        .append("total_quantity", new Document("$sum", "$quantity"))
+                        .append("total_revenue", new Document("$sum", "$revenue")))
+        );
+        List<SalesData> results = new ArrayList<>();
+        try {
+            for (Document doc : mongoDatabase.getCollection(collectionName).aggregate(pipeline)) {
+                results.add(new SalesData(doc.getInteger("_id"), null,
+                        ((Number) doc.get("total_quantity")).intValue(),
+                        ((Number) doc.get("total_revenue")).doubleValue()));
+            }
+        } catch (MongoException e) {
+            throw new StorageException("Error reading sales rollups.", e);
+        }
+        return results;
+    }
+
+    /**
+     * Returns true if a rebuild of the current rollup version has completed.
+     *
+     * @return true if the backfill marker is present and current
+     */
+    @Override
+    public boolean isBackfilled() throws StorageException {
+        try {
+            Document marker = mongoDatabase.getCollection(STATE_COLLECTION)
+                    .find(Filters.eq("_id", BACKFILL_MARKER_ID)).first();
+            return marker != null && marker.getInteger("version", 0) >= ROLLUP_VERSION;
+        } catch (MongoException e) {
+            throw new StorageException("Error reading sales rollups.", e);
+        }
+    }
+
+    // ----------------------------
+    // Backfill
+    // ----------------------------
+
+    /**
+     * Recomputes both rollups from the orders collection in a single pass, then records the
+     * backfill marker.
+     *
+     * Buckets are overwritten, not incremented; orders placed while a rebuild runs may be
+     * counted twice or not at all, so run it while the store is quiet.
+     *
+     * @return the number of orders read
+     */
+    @Override
+    public long rebuild() throws StorageException {
+        try {
+            long count = rebuildFromOrders();
+            mongoDatabase.getCollection(STATE_COLLECTION).replaceOne(Filters.eq("_id", BACKFILL_MARKER_ID),
+                    new Document("_id", BACKFILL_MARKER_ID)
+                            .append("version", ROLLUP_VERSION)
+                            .append("orders", count)
+                            .append("completed_at", new Date()),
+                    new ReplaceOptions().upsert(true));
+            return count;
+        } catch (MongoException e) {
+            throw new StorageException("Error rebuilding sales rollups.", e);
+        }
+    }
+
+    private long rebuildFromOrders() {
+        MongoCollection<Document> ordersCollection = mongoDatabase.getCollection("orders");
+        Map<BucketKey, Totals> daily = new HashMap<>();
+        Map<BucketKey, Totals> hourly = new HashMap<>();
+        long count = 0;
+        for (Document doc : ordersCollection.find()
+                .projection(Projections.include("product_id", "quantity", "order_date", "product_price"))
+                .batchSize(10000)) {
+            if (doc.getDate("order_date") == null) {
+                continue;
+            }
+            Number price = (Number) doc.get("product_price");
+            Order order = new Order(null, 0, doc.getInteger("product_id", 0), doc.getInteger("quantity", 0),
+                    doc.getDate("order_date"), null, price != null ? price.doubleValue() : 0.0);
+            add(daily, order, Calendar.DAY_OF_MONTH);
+            add(hourly, order, Calendar.HOUR_OF_DAY);
+            count++;
+        }
+        replaceBuckets(DAILY_COLLECTION, daily);
+        replaceBuckets(HOURLY_COLLECTION, hourly);
+        Log.info("Sales rollups rebuilt.", "orders", count);
+        return count;
+    }
+
+    private void replaceBuckets(String collectionName, Map<BucketKey, Totals> totals) {
+        MongoCollection<Document> collection = mongoDatabase.getCollection(collectionName);
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        for (Map.Entry<BucketKey, Totals> entry : totals.entrySet()) {
+            BucketKey key = entry.getKey();
+            writes.add(new ReplaceOneModel<>(
+                    Filters.and(Filters.eq("bucket", key.bucket), Filters.eq("product_id", key.productId)),
+                    new Document("bucket", key.bucket)
+                            .append("product_id", key.productId)
+                            .append("quantity", entry.getValue().quantity)
+                            .append("revenue", entry.getValue().revenue),
+                    new ReplaceOptions().upsert(true)));
+            if (writes.size() == BULK_BATCH_SIZE) {
+                collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+                writes.clear();
+            }
+        }
+        if (!writes.isEmpty()) {
+            collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        }
+    }
+
+    // ----------------------------
+    // Helpers
+    // ----------------------------
+
+    private static Map<BucketKey, Totals> aggregate(List<Order> orders, int granularity) {
+        Map<BucketKey, Totals> totals = new HashMap<>();
+        for (Order order : orders) {
+            add(totals, order, granularity);
+        }
+        return totals;
+    }
+
+    private static void add(Map<BucketKey, Totals> totals, Order order, int granularity) {
+        BucketKey key = new BucketKey(truncate(order.getOrderDate(), granularity), order.getProductId());
+        Totals bucket = totals.computeIfAbsent(key, k -> new Totals());
+        bucket.quantity += order.getQuantity();
+        bucket.revenue += order.getQuantity() * order.getProductPrice();
+    }
+
+    /**
+     * Truncates a date to the start of its day or hour in the server's time zone.
+     *
+     * @param date        the date
+     * @param granularity Calendar.DAY_OF_MONTH or Calendar.HOUR_OF_DAY
+     * @return the start of the bucket containing the date
+     */
+    static Date truncate(Date date, int granularity) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(date);
+        if (granularity == Calendar.DAY_OF_MONTH) {
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+        }
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTime();
+    }
+
+    private static class BucketKey {
+        private final Date bucket;
+        private final int productId;
+
+        BucketKey(Date bucket, int productId) {
+            this.bucket = bucket;
+            this.productId = productId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return productId == other.productId && bucket.equals(other.bucket);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucket, productId);
+        }
+    }
+
+    private static class Totals {
+        private int quantity;
+        private double revenue;
+    }
+}
@@ -1,22 +1,34 @@
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
-import java.util.List;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class SearchHandler implements HttpHandler {
-    private DataStore dataStore;
+    // Page size when a cursor is given without a limit
+    private static final int DEFAULT_PAGE_SIZE = 100;
 
-    public SearchHandler() {
-        this.dataStore = new DataStore();
+    private static final String HTML = "text/html";
+    private static final String JSON = "application/json";
+
+    private final DataService dataStore;
+    private final Gson gson;
+
+    public SearchHandler(AppContext context) {
+        this.dataStore = context.getDataStore();
+        this.gson = context.getGson();
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         if (!exchange.getRequestMethod().equalsIgnoreCase("GET")) {
-            sendResponse(exchange, 405, "Method Not Allowed");
+            HttpResponses.send(exchange, 405, "Method Not Allowed");
             return;
         }
 
@@ -32,7 +44,7 @@ public class SearchHandler implements HttpHandler {
             try {
                 productId = Integer.parseInt(queryParams.get("product_id"));
             } catch (NumberFormatException e) {
-                sendResponse(exchange, 400, "Invalid product_id parameter.");
+                HttpResponses.send(exchange, 400, "Invalid product_id parameter.");
                 return;
             }
         }
@@ -40,7 +52,7 @@ public class SearchHandler implements HttpHandler {
         if (queryParams.containsKey("name")) {
             name = queryParams.get("name").trim();
             if (name.isEmpty()) {
-                sendResponse(exchange, 400, "Name parameter cannot be empty.");
+                HttpResponses.send(exchange, 400, "Name parameter cannot be empty.");
                 return;
             }
         }
@@ -49,7 +61,7 @@ public class SearchHandler implements HttpHandler {
             try {
                 priceLessThan = Double.parseDouble(queryParams.get("price_lt"));
             } catch (NumberFormatException e) {
-                sendResponse(exchange, 400, "Invalid price_lt parameter.");
+                HttpResponses.send(exchange, 400, "Invalid price_lt parameter.");
                 return;
             }
         }
@@ -58,68 +70,189 @@ public class SearchHandler implements HttpHandler {
             try {
                 priceGreaterThan = Double.parseDouble(queryParams.get("price_gt"));
             } catch (NumberFormatException e) {
-                sendResponse(exchange, 400, "Invalid price_gt parameter.");
+                HttpResponses.send(exchange, 400, "Invalid price_gt parameter.");
+                return;
+            }
+        }
+
+        // Paging: with a limit or a cursor, one page of results and a link to the next page
+        Integer afterProductId;
+        try {
+            afterProductId = Page.parseProductCursor(queryParams.get("cursor"));
+        } catch (IllegalArgumentException e) {
+            HttpResponses.send(exchange, 400, "Invalid cursor parameter.");
+            return;
+        }
+
+        int limit = Integer.MAX_VALUE;
+        if (queryParams.containsKey("limit")) {
+            try {
+                limit = Integer.parseInt(queryParams.get("limit"));
+            } catch (NumberFormatException e) {
+                HttpResponses.send(exchange, 400, "Invalid limit parameter.");
+                return;
+            }
+            if (limit < 1 || limit > Page.MAX_LIMIT) {
+                HttpResponses.send(exchange, 400, "Limit must be between 1 and " + Page.MAX_LIMIT + ".");
                 return;
             }
+        } else if (afterProductId != null) {
+            limit = DEFAULT_PAGE_SIZE;
         }
 
-        List<Product> products = dataStore.searchProducts(productId, name, priceLessThan, priceGreaterThan);
+        // Representation: format=json|html, else the Accept header (HTML unless JSON is preferred)
+        String mediaType;
+        String format = queryParams.get("format");
+        if (format == null) {
+            exchange.getResponseHeaders().add("Vary", "Accept");
+            mediaType = HttpResponses.negotiateMediaType(exchange.getRequestHeaders().getFirst("Accept"), HTML, JSON);
+        } else if (format.equalsIgnoreCase("json")) {
+            mediaType = JSON;
+        } else if (format.equalsIgnoreCase("html")) {
+            mediaType = HTML;
+        } else {
+            HttpResponses.send(exchange, 400, "Invalid format parameter (json or html).");
+            return;
+        }
 
-        String htmlResponse = generateHTML(products);
-        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
-        sendResponse(exchange, 200, htmlResponse);
+        // Rows are written as they are found, so memory use does not depend on the result size
+        exchange.getResponseHeaders().set("Content-Type", mediaType + "; charset=UTF-8");
+        try (Writer out = new OutputStreamWriter(HttpResponses.stream(exchange, 200), StandardCharsets.UTF_8)) {
+            if (mediaType.equals(JSON)) {
+                writeJSON(out, productId, name, priceLessThan, priceGreaterThan, afterProductId, limit);
+            } else {
+                writeHTML(out, productId, name, priceLessThan, priceGreaterThan, afterProductId, limit,
+                        nextPageBase(requestURI));
+            }
+        }
     }
 
     /**
-     * Generates an HTML page listing the products.
-     *
-     * @param products the list of products
-     * @return HTML string
+     * Streams the results as an HTML page.
      */
-    private String generateHTML(List<Product> products) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("<!DOCTYPE html><html><head><title>Product Search Results</title>");
-        sb.append("<style>");
-        sb.append("table {width: 80%; border-collapse: collapse; margin: 25px 0; font-size: 18px; text-align: left;}");
-        sb.append("th, td {padding: 12px; border-bottom: 1px solid #ddd;}");
-        sb.append("th {background-color: #f2f2f2;}");
-        sb.append("</style></head><body>");
-        sb.append("<h2>Product Search Results</h2>");
-
-        if (products.isEmpty()) {
-            sb.append("<p>No products found matching the search criteria.</p>");
-        } else {
-            sb.append("<table>");
-            sb.append("<tr><th>Product ID</th><th>Name</th><th>Description</th><th>Price ($)</th><th>Stock</th></tr>");
-            for (Product p : products) {
-                sb.append("<tr>");
-                sb.append("<td>").append(p.getProductId()).append("</td>");
-                sb.append("<td>").append(Utils.escapeHTML(p.getName())).append("</td>");
-                sb.append("<td>").append(Utils.escapeHTML(p.getDescription())).append("</td>");
-                sb.append("<td>").append(String.format("%.2f", p.getPrice())).append("</td>");
-                sb.append("<td>").append(p.getStock()).append("</td>");
-                sb.append("</tr>");
+    private void writeHTML(Writer out, Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                           Integer afterProductId, int limit, String nextPageBase) throws IOException {
+        HtmlPageWriter page = new HtmlPageWriter(out);
+        PagedProductSink rows = new PagedProductSink(page, limit);
+        boolean complete = dataStore.searchProductsInto(productId, name, priceLessThan, priceGreaterThan,
+                afterProductId, rows.getFetchSize(), rows);
+        String nextCursor = rows.getNextCursor();
+        page.finish(complete, nextCursor != null
+                ? nextPageBase + URLEncoder.encode(nextCursor, StandardCharsets.UTF_8) : null);
+    }
+
+    /**
+     * Streams the results as a JSON object:
+     * {"products": [...], "nextCursor": "..." or null, "complete": true or false}.
+     * "complete" is false if the search failed part-way and the list is incomplete.
+     */
+    private void writeJSON(Writer out, Integer productId, String name, Double priceLessThan, Double priceGreaterThan,
+                           Integer afterProductId, int limit) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("products").beginArray();
+        PagedProductSink rows = new PagedProductSink(new ProductJsonWriter(json, gson), limit);
+        boolean complete = dataStore.searchProductsInto(productId, name, priceLessThan, priceGreaterThan,
+                afterProductId, rows.getFetchSize(), rows);
+        json.endArray();
+        json.name("nextCursor").value(rows.getNextCursor());
+        json.name("complete").value(complete);
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Returns the request's path and query without its cursor, ready for a new cursor to be
+     * appended.
+     */
+    private static String nextPageBase(URI requestURI) {
+        StringBuilder base = new StringBuilder(requestURI.getRawPath()).append('?');
+        String rawQuery = requestURI.getRawQuery();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                if (!pair.isEmpty() && !pair.startsWith("cursor=")) {
+                    base.append(pair).append('&');
+                }
             }
-            sb.append("</table>");
         }
-
-        sb.append("</body></html>");
-        return sb.toString();
+        return base.append("cursor=").toString();
     }
 
     /**
-     * Sends an HTTP response with the given status code and body.
-     *
-     * @param exchange   the HttpExchange object
-     * @param statusCode the HTTP status code
-     * @param response   the response body
-     * @throws IOException
+     * Writes the HTML page listing the products, one table row per product as it arrives.
      */
-    private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
-        byte[] bytes = response.getBytes("UTF-8");
-        exchange.sendResponseHeaders(statusCode, bytes.length);
-        OutputStream os = exchange.getResponseBody();
-        os.write(bytes);
-        os.close();
+    static class HtmlPageWriter implements ProductSink {
+        private final Writer out;
+        private boolean tableStarted = false;
+
+        HtmlPageWriter(Writer out) throws IOException {
+            this.out = out;
+            out.write("<!DOCTYPE html><html><head><title>Product Search Results</title>");
+            out.write("<style>");
+            out.write("table {width: 80%; border-collapse: collapse; margin: 25px 0; font-size: 18px; text-align: left;}");
+            out.write("th, td {padding: 12px; border-bottom: 1px solid #ddd;}");
+            out.write("th {background-color: #f2f2f2;}");
+            out.write("</style></head><body>");
+            out.write("<h2>Product Search Results</h2>");
+        }
+
+        @Override
+        public void accept(Product p) throws IOException {
+            if (!tableStarted) {
+                out.write("<table>");
+                out.write("<tr><th>Product ID</th><th>Name</th><th>Description</th><th>Price ($)</th><th>Stock</th></tr>");
+                tableStarted = true;
+            }
+            out.write("<tr>");
+            out.write("<td>");
+            out.write(Integer.toString(p.getProductId()));
+            out.write("</td>");
+            out.write("<td>");
+            out.write(Utils.escapeHTML(p.getName()));
+            out.write("</td>");
+            out.write("<td>");
+            out.write(Utils.escapeHTML(p.getDescription()));
+            out.write("</td>");
+            out.write("<td>");
+            out.write(String.format("%.2f", p.getPrice()));
+            out.write("</td>");
+            out.write("<td>");
+            out.write(Integer.toString(p.getStock()));
+            out.write("</td>");
+            out.write("</tr>");
+        }
+
+        /**
+         * Closes the table and the page.
+         *
+         * @param complete false if the search failed part-way, to say the list is incomplete
+         * @throws IOException if the page cannot be written
+         */
+        void finish(boolean complete) throws IOException {
+            finish(complete, null);
+        }
+
+        /**
+         * Closes the table and the page, linking to the next page of results if there is one.
+         *
+         * @param complete     false if the search failed part-way, to say the list is incomplete
+         * @param nextPageHref the URL of the next page, or null on the last page
+         * @throws IOException if the page cannot be written
+         */
+        void finish(boolean complete, String nextPageHref) throws IOException {
+            if (tableStarted) {
+                out.write("</table>");
+            } else if (complete) {
+                out.write("<p>No products found matching the search criteria.</p>");
+            }
+            if (!complete) {
+                out.write("<p>Some results could not be loaded. Please try again.</p>");
+            } else if (nextPageHref != null) {
+                out.write("<p><a href=\"");
+                out.write(Utils.escapeHTML(nextPageHref));
+                out.write("\">Next page</a></p>");
+            }
+            out.write("</body></html>");
+        }
     }
 }
@@ -0,0 +1,159 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stock held for open carts, so a customer learns that a product has run out when adding it
+ * to the cart rather than at checkout.
+ *
+ * A reservation sets aside a quantity of one product. The quantity available to new
+ * reservations is the product's stock less everything already reserved for it; the reserved
+ * total per product is kept in memory, so the check costs no database call. Checkout honours
+ * the same rule: each line's conditional decrement must leave the stock other carts hold (see
+ * {@link #stockToKeep}), so a line takes its own reservation and otherwise only unreserved
+ * stock. Checkout then releases the cart's reservations. A reservation that is neither checked
+ * out nor released, e.g. an abandoned cart, is released by a {@link TimerWheel} after its
+ * time-to-live.
+ *
+ * Reservations are only known to this process: they keep this process's carts from
+ * overcommitting stock, but orders placed by other processes do not see them.
+ */
+public class StockReservations {
+    private final long ttlMs;
+    private final TimerWheel expiryWheel;
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    // Reserved quantity per product; guarded by this
+    private final IntObjectMap<Integer> reservedByProduct = new IntObjectMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    /**
+     * @param ttlMs how long a reservation is held, in milliseconds
+     */
+    public StockReservations(long ttlMs) {
+        this.ttlMs = ttlMs;
+        // 1 s ticks; one turn of the wheel is about 8.5 minutes
+        this.expiryWheel = new TimerWheel("stock-reservation-expiry", 1000, 512);
+    }
+
+    /**
+     * Reserves stock of a product if enough of it is not reserved already.
+     *
+     * @param productId the product ID
+     * @param quantity  the quantity to reserve
+     * @param stock     the product's current stock
+     * @return the reservation ID, or null if less than quantity is available
+     */
+    public String reserve(int productId, int quantity, int stock) {
+        synchronized (this) {
+            if (reservedFor(productId) + quantity > stock) {
+                return null;
+            }
+            reservedByProduct.put(productId, reservedFor(productId) + quantity);
+        }
+        String reservationId = "RSV-" + sequence.incrementAndGet();
+        Reservation reservation = new Reservation(productId, quantity);
+        reservations.put(reservationId, reservation);
+        reservation.expiry = expiryWheel.schedule(() -> {
+            if (release(reservationId)) {
+                expired.incrementAndGet();
+            }
+        }, ttlMs);
+        return reservationId;
+    }
+
+    /**
+     * Releases a reservation, after checkout or when the item leaves the cart.
+     *
+     * @param reservationId the reservation ID
+     * @return true if it was held, false if it was already released or has expired
+     */
+    public boolean release(String reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation == null) {
+            return false;
+        }
+        TimerWheel.Timeout expiry = reservation.expiry;
+        if (expiry != null) {
+            expiry.cancel();
+        }
+        synchronized (this) {
+            int remaining = reservedFor(reservation.productId) - reservation.quantity;
+            if (remaining > 0) {
+                reservedByProduct.put(reservation.productId, remaining);
+            } else {
+                reservedByProduct.remove(reservation.productId);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns, for each line of a checkout, the stock its decrement must leave for other carts:
+     * everything reserved for its product, less what the checkout's own lines hold of it. A
+     * line whose reservation has been released or has expired counts as unreserved.
+     *
+     * @param lines the checkout's lines, with their reservation IDs
+     * @return the stock to keep for each line, at the same positions
+     */
+    public int[] stockToKeep(List<OrderLine> lines) {
+        Map<Integer, Integer> ownHolds = new HashMap<>();
+        for (OrderLine line : lines) {
+            Reservation reservation = line.getReservationId() != null ? reservations.get(line.getReservationId()) : null;
+            if (reservation != null && reservation.productId == line.getProductId()) {
+                ownHolds.merge(reservation.productId, reservation.quantity, Integer::sum);
+            }
+        }
+        int[] keep = new int[lines.size()];
+        synchronized (this) {
+            for (int i = 0; i < lines.size(); i++) {
+                int productId = lines.get(i).getProductId();
+                keep[i] = Math.max(0, reservedFor(productId) - ownHolds.getOrDefault(productId, 0));
+            }
+        }
+        return keep;
+    }
+
+    /**
+     * @param productId the product ID
+     * @return the quantity of the product currently reserved
+     */
+    public synchronized int reservedFor(int productId) {
+        Integer reserved = reservedByProduct.get(productId);
+        return reserved != null ? reserved : 0;
+    }
+
+    /**
+     * Stops the expiry thread. Reservations still held are no longer released when they expire.
+     */
+    public void close() {
+        expiryWheel.stop();
+    }
+
+    /**
+     * @return the number of reservations currently held
+     */
+    public int size() {
+        return reservations.size();
+    }
+
+    /**
+     * @return the number of reservations released because they expired
+     */
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    private static class Reservation {
+        private final int productId;
+        private final int quantity;
+        private volatile TimerWheel.Timeout expiry;
+
+        Reservation(int productId, int quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+}
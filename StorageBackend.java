@@ -0,0 +1,32 @@
+/**
+ * A complete set of repositories over one kind of storage.
+ *
+ * DataStore talks only to this interface, so the MySQL/MongoDB backend and the in-memory
+ * backend can be swapped (-Dstore.backend=database|memory) and compared under the same load.
+ */
+public interface StorageBackend {
+    String getName();
+
+    UserRepository users();
+
+    ProductRepository products();
+
+    CustomerRepository customers();
+
+    OrderRepository orders();
+
+    RefillOrderRepository refillOrders();
+
+    SalesRepository sales();
+
+    /**
+     * Returns where placed orders wait, in the same transaction as their stock change, until
+     * they are copied to {@link #orders()}.
+     */
+    OrderOutbox orderOutbox();
+
+    /**
+     * Releases connections and background threads held by the backend.
+     */
+    void close();
+}
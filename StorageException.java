@@ -0,0 +1,12 @@
+/**
+ * Thrown by repositories when the backing store fails (SQL errors, Mongo errors, timeouts).
+ */
+public class StorageException extends Exception {
+    public StorageException(String message) {
+        super(message);
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel for large numbers of timeouts that are mostly cancelled before they fire.
+ *
+ * Time is cut into ticks of a fixed length and the wheel has one bucket per tick, wrapping
+ * around; a timeout goes into the bucket of the tick it is due in, with the number of full
+ * turns still to wait. Scheduling and cancelling are O(1) and never take a lock: new timeouts
+ * are handed to the wheel's thread through a queue, and cancelled ones are only flagged and
+ * dropped when their bucket comes round. The thread wakes once per tick and only looks at the
+ * current bucket, so timeouts fire up to one tick late. Tasks run on the wheel's thread and
+ * must be short.
+ *
+ * The thread is a daemon started by the first {@link #schedule}.
+ */
+public class TimerWheel {
+    private final String threadName;
+    private final long tickNanos;
+    private final List<Timeout>[] buckets;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+    private volatile Thread worker;
+    private volatile boolean stopped = false;
+    private long startNanos; // Set by the worker before any tick
+    private long tick = 0;   // Only touched by the worker
+
+    /**
+     * @param threadName the name of the wheel's thread
+     * @param tickMs     the length of a tick, in milliseconds
+     * @param wheelSize  the number of buckets; one turn of the wheel is tickMs * wheelSize
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(String threadName, long tickMs, int wheelSize) {
+        this.threadName = threadName;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        this.buckets = new List[Math.max(1, wheelSize)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Runs a task after a delay, on the wheel's thread.
+     *
+     * @param task    the task to run
+     * @param delayMs the delay, in milliseconds
+     * @return a handle to cancel the timeout with
+     */
+    public Timeout schedule(Runnable task, long delayMs) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs));
+        added.add(timeout);
+        startIfNeeded();
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel's thread. Timeouts that have not fired yet never will.
+     */
+    public void stop() {
+        stopped = true;
+        Thread t = worker;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private void startIfNeeded() {
+        if (worker != null) {
+            return;
+        }
+        synchronized (this) {
+            if (worker == null && !stopped) {
+                Thread t = new Thread(this::run, threadName);
+                t.setDaemon(true);
+                startNanos = System.nanoTime();
+                worker = t;
+                t.start();
+            }
+        }
+    }
+
+    // ----------------------------
+    // Wheel Thread
+    // ----------------------------
+
+    private void run() {
+        while (!stopped) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleep = deadline - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(sleep);
+                continue;
+            }
+            transferAdded();
+            expireBucket(buckets[(int) (tick % buckets.length)], deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * Puts newly scheduled timeouts into the buckets of the ticks they are due in.
+     */
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long dueTick = Math.max(tick, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos - 1);
+            timeout.remainingRounds = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick % buckets.length)].add(timeout);
+        }
+    }
+
+    private void expireBucket(List<Timeout> bucket, long tickEndNanos) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.cancelled) {
+                continue;
+            }
+            if (timeout.remainingRounds > 0 || timeout.deadlineNanos > tickEndNanos) {
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                }
+                bucket.set(kept++, timeout);
+                continue;
+            }
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                Log.error("Timer task failed.", e, "timer", threadName);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    /**
+     * A scheduled task that has not run yet.
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private volatile boolean cancelled = false;
+        private long remainingRounds; // Only touched by the wheel's thread
+
+        Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Keeps the task from running, unless it is already running or has run.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Storage for login accounts.
+ */
+public interface UserRepository {
+    /**
+     * Finds a User by username.
+     *
+     * @param username the username to search for
+     * @return User object if found, else null
+     */
+    User findByUsername(String username) throws StorageException;
+
+    /**
+     * Creates a new User.
+     *
+     * @param username the username
+     * @param password the plain-text password
+     * @param role     the role (e.g., "customer")
+     * @return the generated user ID
+     */
+    int create(String username, String password, String role) throws StorageException;
+}
@@ -0,0 +1,126 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access to the application classes from the benchmarks.
+ *
+ * The application lives in the unnamed package, which code in a named package (as JMH requires
+ * for benchmarks) cannot import. The handles below are static finals, so the JIT treats them as
+ * constants and inlines the calls; measured code runs exactly as it would when called directly.
+ */
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    static final Class<?> PRODUCT = load("Product");
+    static final Class<?> ORDER = load("Order");
+
+    static final MethodHandle PARSE_QUERY_PARAMS = findStatic("Utils", "parseQueryParams",
+            MethodType.methodType(Map.class, String.class));
+    static final MethodHandle ESCAPE_HTML = findStatic("Utils", "escapeHTML",
+            MethodType.methodType(String.class, String.class));
+    static final Class<?> HTML_PAGE_WRITER = load("SearchHandler$HtmlPageWriter");
+    static final MethodHandle NEW_HTML_PAGE_WRITER = findPrivate(HTML_PAGE_WRITER, "<init>",
+            MethodType.methodType(void.class, Writer.class));
+    static final MethodHandle HTML_PAGE_WRITER_ACCEPT = findPrivate(HTML_PAGE_WRITER, "accept",
+            MethodType.methodType(void.class, PRODUCT));
+    static final MethodHandle HTML_PAGE_WRITER_FINISH = findPrivate(HTML_PAGE_WRITER, "finish",
+            MethodType.methodType(void.class, boolean.class));
+    static final Class<?> PRODUCT_JSON_WRITER = load("ProductJsonWriter");
+    static final MethodHandle NEW_PRODUCT_JSON_WRITER = findConstructor(PRODUCT_JSON_WRITER,
+            MethodType.methodType(void.class, JsonWriter.class, Gson.class));
+    static final MethodHandle PRODUCT_JSON_WRITER_ACCEPT = findVirtual(PRODUCT_JSON_WRITER, "accept",
+            MethodType.methodType(void.class, PRODUCT));
+
+    private static final MethodHandle NEW_PRODUCT = findConstructor(PRODUCT,
+            MethodType.methodType(void.class, int.class, String.class, String.class, double.class, int.class));
+    private static final MethodHandle NEW_ORDER = findConstructor(ORDER,
+            MethodType.methodType(void.class, String.class, int.class, int.class, int.class, Date.class, String.class));
+
+    private App() {
+    }
+
+    static Object newProduct(int productId, String name, String description, double price, int stock) {
+        try {
+            return NEW_PRODUCT.invoke(productId, name, description, price, stock);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static Object newOrder(String orderId, int userId, int productId, int quantity, Date orderDate, String status) {
+        try {
+            return NEW_ORDER.invoke(orderId, userId, productId, quantity, orderDate, status);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Builds a deterministic list of products with varied names, prices and characters that
+     * need HTML escaping.
+     */
+    static List<Object> sampleProducts(int count) {
+        String[] words = {"Apple", "Banana", "Cherry", "Pear", "Grape", "Mango", "Kiwi", "Melon"};
+        Object[] products = new Object[count];
+        for (int i = 0; i < count; i++) {
+            String name = words[i % words.length] + " " + words[(i / words.length) % words.length] + " #" + i;
+            String description = (i % 10 == 0) ? "Fresh & <organic> \"premium\"" : "Fresh produce";
+            products[i] = newProduct(i + 1, name, description, 0.5 + (i % 200) * 0.25, i % 50);
+        }
+        return List.of(products);
+    }
+
+    static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle findStatic(String className, String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(load(className), name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Finds a constructor ("<init>") or instance method of a class that is not public.
+     */
+    private static MethodHandle findPrivate(Class<?> cls, String name, MethodType type) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(cls, LOOKUP);
+            return name.equals("<init>") ? lookup.findConstructor(cls, type) : lookup.findVirtual(cls, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle findVirtual(Class<?> cls, String name, MethodType type) {
+        try {
+            return LOOKUP.findVirtual(cls, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle findConstructor(Class<?> cls, MethodType type) {
+        try {
+            return LOOKUP.findConstructor(cls, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
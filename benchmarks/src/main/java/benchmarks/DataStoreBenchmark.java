@@ -0,0 +1,89 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataStore end to end over the in-memory backend: everything the server does per request
+ * except the network and the database.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Dstore.backend=memory", "-Dstore.memory.seedProducts=10000"})
+@State(Scope.Benchmark)
+public class DataStoreBenchmark {
+    private static final int PRODUCTS = 10000;
+
+    private static final Class<?> DATA_STORE = App.load("DataStore");
+    private static final MethodHandle PLACE_ORDER;
+    private static final MethodHandle SEARCH_BY_NAME;
+    private static final MethodHandle FIND_BY_IDS;
+    private static final MethodHandle UPDATE_PRODUCT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            PLACE_ORDER = lookup.findStatic(DATA_STORE, "placeOrder",
+                    MethodType.methodType(boolean.class, int.class, int.class, int.class));
+            SEARCH_BY_NAME = lookup.findStatic(DATA_STORE, "searchProductsByName",
+                    MethodType.methodType(List.class, String.class));
+            FIND_BY_IDS = lookup.findStatic(DATA_STORE, "findProductsByIds",
+                    MethodType.methodType(Map.class, Collection.class));
+            UPDATE_PRODUCT = lookup.findStatic(DATA_STORE, "updateProduct",
+                    MethodType.methodType(boolean.class, App.PRODUCT)).asType(
+                    MethodType.methodType(void.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private List<Integer> cartIds;
+
+    @Setup
+    public void setUp() throws Throwable {
+        // Plenty of stock, so orders keep succeeding for the whole run
+        for (int id = 1; id <= PRODUCTS; id++) {
+            UPDATE_PRODUCT.invokeExact(App.newProduct(id, "Product " + id, "Benchmark product", 9.99, Integer.MAX_VALUE / 2));
+        }
+        cartIds = List.of(1, 17, 256, 4242, 9999);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean placeOrder() throws Throwable {
+        int productId = ThreadLocalRandom.current().nextInt(1, PRODUCTS + 1);
+        return (boolean) PLACE_ORDER.invokeExact(3, productId, 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<?> searchByName() throws Throwable {
+        return (List<?>) SEARCH_BY_NAME.invokeExact("4242");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Map<?, ?> findCartProducts() throws Throwable {
+        return (Map<?, ?>) FIND_BY_IDS.invokeExact((Collection<?>) cartIds);
+    }
+}
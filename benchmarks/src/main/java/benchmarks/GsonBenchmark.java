@@ -0,0 +1,64 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the entities returned by /products and /orders.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GsonBenchmark {
+    private Gson gson;
+    private Object product;
+    private Object order;
+    private List<Object> products;
+    private String productJson;
+
+    @Setup
+    public void setUp() {
+        gson = new Gson();
+        product = App.newProduct(42, "Red Apple", "Fresh & <organic> \"premium\"", 1.25, 300);
+        order = App.newOrder("ORD-1234567890123456789", 7, 42, 3, new Date(1700000000000L), "Pending");
+        products = App.sampleProducts(100);
+        productJson = gson.toJson(product);
+    }
+
+    @Benchmark
+    public String productToJson() {
+        return gson.toJson(product);
+    }
+
+    @Benchmark
+    public String orderToJson() {
+        return gson.toJson(order);
+    }
+
+    @Benchmark
+    public String hundredProductsToJson() {
+        return gson.toJson(products);
+    }
+
+    @Benchmark
+    public Object productFromJson() {
+        return gson.fromJson(productJson, App.PRODUCT);
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order id generation, single-threaded and with four threads sharing one generator.
+ *
+ * A node is capped at 4096 ids per millisecond, so results around 4 ops/us mean the generator
+ * is waiting for the clock rather than contending.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderIdGeneratorBenchmark {
+    private static final Class<?> GENERATOR = App.load("OrderIdGenerator");
+    private static final MethodHandle NEXT_ID;
+    private static final MethodHandle NEXT_ORDER_ID;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            NEXT_ID = lookup.findVirtual(GENERATOR, "nextId", MethodType.methodType(long.class))
+                    .asType(MethodType.methodType(long.class, Object.class));
+            NEXT_ORDER_ID = lookup.findVirtual(GENERATOR, "nextOrderId", MethodType.methodType(String.class))
+                    .asType(MethodType.methodType(String.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object generator = newGenerator();
+
+    private static Object newGenerator() {
+        try {
+            return GENERATOR.getConstructor(int.class).newInstance(1);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public long nextId() throws Throwable {
+        return (long) NEXT_ID.invokeExact(generator);
+    }
+
+    @Benchmark
+    public String nextOrderId() throws Throwable {
+        return (String) NEXT_ORDER_ID.invokeExact(generator);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long nextIdContended() throws Throwable {
+        return (long) NEXT_ID.invokeExact(generator);
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory product catalog behind /search: lookups by id, name and price range.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductCatalogBenchmark {
+    private static final Class<?> CATALOG = App.load("ProductCatalog");
+    private static final MethodHandle SEARCH;
+
+    static {
+        try {
+            SEARCH = MethodHandles.lookup().findVirtual(CATALOG, "search",
+                    MethodType.methodType(List.class, Integer.class, String.class, Double.class, Double.class))
+                    .asType(MethodType.methodType(List.class, Object.class, Integer.class, String.class, Double.class, Double.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"10000"})
+    private int catalogSize;
+
+    private Object catalog;
+
+    @Setup
+    public void setUp() throws Exception {
+        catalog = CATALOG.getConstructor().newInstance();
+        CATALOG.getMethod("load", List.class).invoke(catalog, App.sampleProducts(catalogSize));
+    }
+
+    @Benchmark
+    public List<?> byId() throws Throwable {
+        return (List<?>) SEARCH.invokeExact(catalog, (Integer) 4242, (String) null, (Double) null, (Double) null);
+    }
+
+    @Benchmark
+    public List<?> byRareName() throws Throwable {
+        return (List<?>) SEARCH.invokeExact(catalog, (Integer) null, "#4242", (Double) null, (Double) null);
+    }
+
+    @Benchmark
+    public List<?> byCommonNameAndPrice() throws Throwable {
+        return (List<?>) SEARCH.invokeExact(catalog, (Integer) null, "apple", (Double) 20.0, (Double) 10.0);
+    }
+
+    @Benchmark
+    public List<?> byPriceRange() throws Throwable {
+        return (List<?>) SEARCH.invokeExact(catalog, (Integer) null, (String) null, (Double) 5.0, (Double) 4.0);
+    }
+}
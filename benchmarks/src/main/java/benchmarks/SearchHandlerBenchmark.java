@@ -0,0 +1,71 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of /search results as an HTML page and as JSON for result sets of different sizes,
+ * as streamed to the client (the output is discarded, so only rendering and encoding are
+ * measured).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchHandlerBenchmark {
+    @Param({"0", "10", "1000"})
+    private int resultCount;
+
+    private List<Object> products;
+    private final Gson gson = new Gson();
+
+    @Setup
+    public void setUp() {
+        products = App.sampleProducts(resultCount);
+    }
+
+    @Benchmark
+    public void writeHTML() throws Throwable {
+        Writer out = new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+        Object page = App.NEW_HTML_PAGE_WRITER.invoke(out);
+        for (Object product : products) {
+            App.HTML_PAGE_WRITER_ACCEPT.invoke(page, product);
+        }
+        App.HTML_PAGE_WRITER_FINISH.invoke(page, true);
+        out.flush();
+    }
+
+    @Benchmark
+    public void writeJSON() throws Throwable {
+        Writer out = new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+        JsonWriter json = new JsonWriter(out);
+        json.beginArray();
+        Object writer = App.NEW_PRODUCT_JSON_WRITER.invoke(json, gson);
+        for (Object product : products) {
+            App.PRODUCT_JSON_WRITER_ACCEPT.invoke(writer, product);
+        }
+        json.endArray();
+        json.flush();
+    }
+}
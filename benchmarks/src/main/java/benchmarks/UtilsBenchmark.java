@@ -0,0 +1,52 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query-string parsing and HTML escaping, called on every /search request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UtilsBenchmark {
+    private String simpleQuery = "product_id=42";
+    private String fullQuery = "name=red+apple%20juice&price_lt=10.50&price_gt=1&format=json&limit=50";
+    private String plainText = "Fresh organic apples from local farms";
+    private String markupText = "Fresh & <organic> \"premium\" apples from O'Brien's farm";
+
+    @SuppressWarnings("unchecked")
+    @Benchmark
+    public Map<String, String> parseSimpleQuery() throws Throwable {
+        return (Map<String, String>) App.PARSE_QUERY_PARAMS.invokeExact(simpleQuery);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Benchmark
+    public Map<String, String> parseFullQuery() throws Throwable {
+        return (Map<String, String>) App.PARSE_QUERY_PARAMS.invokeExact(fullQuery);
+    }
+
+    @Benchmark
+    public String escapePlainText() throws Throwable {
+        return (String) App.ESCAPE_HTML.invokeExact(plainText);
+    }
+
+    @Benchmark
+    public String escapeMarkup() throws Throwable {
+        return (String) App.ESCAPE_HTML.invokeExact(markupText);
+    }
+}